@@ -25,6 +25,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -115,6 +116,25 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
     @Parameter(property = "xml.catalogHandling", defaultValue = "passThrough")
     private CatalogHandling catalogHandling;
 
+    /**
+     * If true, then the wall time, and the number of bytes read, and written, are collected per file. The slowest
+     * files, and percentiles, are logged per file set at the end of the goal, and written to the JSON file
+     * "target/xml-maven-plugin/timing-&lt;goal&gt;.json". See
+     * <a href="common-properties.html">Common Goal Properties</a>.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.timingReport", defaultValue = "false")
+    private boolean timingReport;
+
+    /**
+     * The maximum number of slowest files, which are reported per file set, if "timingReport" is enabled.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.timingReportSize", defaultValue = "10")
+    private int timingReportSize;
+
     /**
      * Plexus resource manager used to obtain XSL.
      */
@@ -164,7 +184,8 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
     /**
      * Returns the plugins catalog files.
      */
-    protected void setCatalogs(List<File> pCatalogFiles, List<URL> pCatalogUrls) throws MojoExecutionException {
+    protected synchronized void setCatalogs(List<File> pCatalogFiles, List<URL> pCatalogUrls)
+            throws MojoExecutionException {
         if (catalogs == null || catalogs.length == 0) {
             return;
         }
@@ -191,11 +212,22 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
                     } catch (IOException e) {
                         getLog().debug("Failed to close class loader", e);
                     }
+                    // A closed class loader doesn't find resources, so the next catalog needs a new one.
+                    classLoader = null;
                 }
             }
         }
     }
 
+    /**
+     * Returns a string, which identifies the configured catalogs, and the catalog handling. Used as part of cache
+     * keys.
+     */
+    protected String getCatalogConfiguration() {
+        return "catalogs:" + (catalogs == null ? "[]" : Arrays.asList(catalogs)) + ", catalogHandling:"
+                + catalogHandling;
+    }
+
     /**
      * Creates a new resolver.
      */
@@ -209,7 +241,8 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
     }
 
     /**
-     * Scans a directory for files and returns a set of path names.
+     * Scans a directory for files and returns a set of path names. The names are sorted, so that the files are
+     * processed, and logged, in the same order on every file system.
      */
     protected String[] getFileNames(File pDir, String[] pIncludes, String[] pExcludes)
             throws MojoFailureException, MojoExecutionException {
@@ -231,7 +264,9 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
             ds.setExcludes(pExcludes);
         }
         ds.scan();
-        return ds.getIncludedFiles();
+        final String[] result = ds.getIncludedFiles();
+        Arrays.sort(result);
+        return result;
     }
 
     /**
@@ -352,7 +387,7 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
         }
     }
 
-    protected URL getResource(String pResource) throws MojoFailureException {
+    protected synchronized URL getResource(String pResource) throws MojoFailureException {
         try {
             return getLocator().getResource(pResource).getURL();
         } catch (ResourceNotFoundException exception) {
@@ -362,7 +397,7 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
         }
     }
 
-    protected ResourceManager getLocator() {
+    protected synchronized ResourceManager getLocator() {
         if (!locatorInitialized) {
             locator.addSearchPath(FileResourceLoader.ID, getBasedir().getAbsolutePath());
             locatorInitialized = true;
@@ -374,6 +409,40 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
         return skip;
     }
 
+    /**
+     * Returns a file in the plugins state directory.
+     */
+    File getStateFile(String pPrefix, String pKey, String pSuffix) {
+        return new File(getProject().getBuild().getDirectory(), "xml-maven-plugin/" + pPrefix + pKey + pSuffix);
+    }
+
+    /**
+     * Creates a new timing report for the given goal.
+     *
+     * @return The timing report, or null, if timing reports are disabled.
+     */
+    TimingReport newTimingReport(String pGoal) {
+        return timingReport ? new TimingReport(pGoal) : null;
+    }
+
+    /**
+     * Logs the given timing report, and writes it to the plugins state directory.
+     *
+     * @param pReport The timing report, or null, if timing reports are disabled.
+     */
+    void finishTimingReport(TimingReport pReport) {
+        if (pReport == null) {
+            return;
+        }
+        pReport.log(getLog(), timingReportSize);
+        final File file = getStateFile("timing-", pReport.getGoal(), ".json");
+        try {
+            pReport.write(file, timingReportSize);
+        } catch (IOException e) {
+            getLog().warn("Failed to write timing report: " + e.getMessage());
+        }
+    }
+
     void checkCatalogHandling() throws MojoFailureException {
         if (getCatalogHandling() == null) {
             throw new MojoFailureException("Illegal value for catalogHandling parameter");
@@ -384,7 +453,7 @@ public abstract class AbstractXmlMojo extends AbstractMojo {
         return catalogHandling;
     }
 
-    private ClassLoader getClassLoader() {
+    private synchronized ClassLoader getClassLoader() {
         if (classLoader == null) {
             List<URL> urls = new ArrayList<>();
             if (pluginDependencies != null) {
@@ -0,0 +1,61 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for creating files atomically: The content is written to a temporary file in the same directory, which
+ * is then renamed. Readers never observe a partially written file, and the temporary file is on the same file
+ * system, so that no copy is required.
+ */
+final class AtomicFiles {
+    private AtomicFiles() {}
+
+    /**
+     * Creates a temporary file in the directory of the given target file. The directory is created, if necessary.
+     * The temporary files name starts with a dot, so that it is hidden, and the prefix is long enough for
+     * {@link File#createTempFile(String, String, File)}, even if the target files name is very short.
+     */
+    static File newTempFile(File pTarget) throws IOException {
+        final File dir = pTarget.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        return File.createTempFile("." + pTarget.getName() + "-", ".tmp", dir);
+    }
+
+    /**
+     * Replaces the target file with the given temporary file. The rename is atomic, if supported by the file system.
+     */
+    static void publish(File pTempFile, File pTarget) throws IOException {
+        try {
+            Files.move(
+                    pTempFile.toPath(),
+                    pTarget.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(pTempFile.toPath(), pTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -194,20 +194,33 @@ public class CheckFormatMojo extends AbstractXmlMojo {
 
         int processedFileCount = 0;
 
-        for (FormatFileSet formatFileSet : formatFileSets) {
-            String effectiveEncoding = formatFileSet.getEncoding();
-            if (effectiveEncoding == null) {
-                effectiveEncoding = this.encoding;
-            }
-            String[] includedFiles = scan(formatFileSet);
-            for (String includedPath : includedFiles) {
-                processedFileCount++;
-                File file = new File(formatFileSet.getDirectory(), includedPath);
-                check(file, effectiveEncoding, violationCollector);
-                if (getLog().isDebugEnabled() && !violationCollector.hasViolations(file)) {
-                    getLog().debug("No XML formatting violations found in file " + file.getAbsolutePath());
+        final TimingReport timingReport = newTimingReport("check-format");
+        try {
+            for (int i = 0; i < formatFileSets.size(); i++) {
+                final FormatFileSet formatFileSet = formatFileSets.get(i);
+                String effectiveEncoding = formatFileSet.getEncoding();
+                if (effectiveEncoding == null) {
+                    effectiveEncoding = this.encoding;
+                }
+                final TimingReport.Group timing = timingReport == null
+                        ? null
+                        : timingReport.newGroup("format file set #" + (i + 1), new File(formatFileSet.getDirectory()));
+                String[] includedFiles = scan(formatFileSet);
+                for (String includedPath : includedFiles) {
+                    processedFileCount++;
+                    File file = new File(formatFileSet.getDirectory(), includedPath);
+                    final long start = System.nanoTime();
+                    check(file, effectiveEncoding, violationCollector);
+                    if (timing != null) {
+                        timing.add(file, start, file.length(), 0);
+                    }
+                    if (getLog().isDebugEnabled() && !violationCollector.hasViolations(file)) {
+                        getLog().debug("No XML formatting violations found in file " + file.getAbsolutePath());
+                    }
                 }
             }
+        } finally {
+            finishTimingReport(timingReport);
         }
         getLog().debug("Checked the formatting of " + processedFileCount + " files");
 
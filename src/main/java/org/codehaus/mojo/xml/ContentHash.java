@@ -0,0 +1,131 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class for computing content hashes, which are used as cache keys.
+ */
+final class ContentHash {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {}
+
+    /**
+     * Creates a new message digest.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Returns the hash of the given bytes.
+     */
+    static String of(byte[] pBytes) {
+        return toHex(newDigest().digest(pBytes));
+    }
+
+    /**
+     * Returns the hash of the given string.
+     */
+    static String of(String pString) {
+        return of(pString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the hash of the resource, which is referenced by the given URL.
+     *
+     * @return The hash, or null, if the resource cannot be read.
+     */
+    static String of(URL pUrl) {
+        try {
+            return of(read(pUrl));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the hash of the given file. Unlike {@link #of(URL)}, the file is processed in chunks.
+     */
+    static String of(File pFile) throws IOException {
+        final MessageDigest digest = newDigest();
+        final InputStream stream = new FileInputStream(pFile);
+        try {
+            final byte[] buffer = new byte[8192];
+            for (; ; ) {
+                final int res = stream.read(buffer);
+                if (res == -1) {
+                    break;
+                }
+                digest.update(buffer, 0, res);
+            }
+        } finally {
+            stream.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Reads the resource, which is referenced by the given URL.
+     */
+    static byte[] read(URL pUrl) throws IOException {
+        final InputStream stream = pUrl.openStream();
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for (; ; ) {
+                final int res = stream.read(buffer);
+                if (res == -1) {
+                    break;
+                }
+                baos.write(buffer, 0, res);
+            }
+            return baos.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Converts the given digest into a hex string.
+     */
+    static String toHex(byte[] pDigest) {
+        final char[] chars = new char[pDigest.length * 2];
+        for (int i = 0; i < pDigest.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(pDigest[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX_DIGITS[pDigest[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,297 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A manifest, which records for every output file of a transformation set the resources, which have actually been
+ * read while creating it: The input file, the stylesheet and its modules, and every resource, which has been served
+ * by the {@link Resolver}, like documents, which have been loaded by the document() function. Every resource is
+ * recorded with its content hash. An output file is up-to-date, if it is unchanged, and the content of all of its
+ * recorded resources is unchanged.
+ * <p>
+ * The manifest also contains a hash of the transformation sets configuration. If that changes, then all outputs are
+ * considered outdated.
+ * <p>
+ * Instances are safe for use by multiple threads.
+ */
+class DependencyManifest {
+    private static final String HEADER = "xml-maven-plugin-manifest\t1\t";
+
+    private static class Dependency {
+        final long lastModified;
+        final long length;
+        final String hash;
+
+        Dependency(long pLastModified, long pLength, String pHash) {
+            lastModified = pLastModified;
+            length = pLength;
+            hash = pHash;
+        }
+    }
+
+    private static class Entry {
+        final long lastModified;
+        final long length;
+        final Map<String, Dependency> dependencies;
+
+        Entry(long pLastModified, long pLength, Map<String, Dependency> pDependencies) {
+            lastModified = pLastModified;
+            length = pLength;
+            dependencies = pDependencies;
+        }
+    }
+
+    private final File file;
+
+    private final String configuration;
+
+    private final Log log;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private final Map<String, Dependency> currentDependencies = new ConcurrentHashMap<String, Dependency>();
+
+    private final Map<String, Boolean> unchangedDependencies = new ConcurrentHashMap<String, Boolean>();
+
+    private DependencyManifest(File pFile, String pConfiguration, Log pLog) {
+        file = pFile;
+        configuration = pConfiguration;
+        log = pLog;
+    }
+
+    /**
+     * Reads the manifest from the given file. If the file doesn't exist, is unreadable, or has been created with a
+     * different configuration, then an empty manifest is returned.
+     *
+     * @param pFile          The manifest file.
+     * @param pConfiguration A hash of the transformation sets configuration.
+     * @param pLog           The logger to use.
+     */
+    static DependencyManifest load(File pFile, String pConfiguration, Log pLog) {
+        final DependencyManifest manifest = new DependencyManifest(pFile, pConfiguration, pLog);
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(pFile), StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            pLog.debug("No dependency manifest found at " + pFile);
+            return manifest;
+        }
+        try {
+            final String header = reader.readLine();
+            if (header == null || !header.equals(HEADER + pConfiguration)) {
+                pLog.debug("Ignoring dependency manifest " + pFile + ", because the configuration has changed.");
+                return manifest;
+            }
+            Map<String, Dependency> dependencies = null;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final String[] fields = line.split("\t", -1);
+                if (fields.length == 4 && "O".equals(fields[0])) {
+                    dependencies = new LinkedHashMap<String, Dependency>();
+                    manifest.entries.put(
+                            fields[3], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), dependencies));
+                } else if (fields.length == 5 && "D".equals(fields[0]) && dependencies != null) {
+                    dependencies.put(
+                            fields[4], new Dependency(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+                } else {
+                    throw new IOException("Invalid line: " + line);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            pLog.warn("Ignoring unreadable dependency manifest " + pFile + ": " + e.getMessage());
+            manifest.entries.clear();
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Ignore me
+            }
+        }
+        return manifest;
+    }
+
+    private static String getKey(File pOutput) {
+        return pOutput.getAbsoluteFile().toURI().toString();
+    }
+
+    /**
+     * Returns, whether the given output file is up-to-date: The manifest contains an entry for the file, the file is
+     * unchanged, and so are all resources, which have been recorded for the file.
+     */
+    boolean isUpToDate(File pOutput) {
+        final Entry entry;
+        synchronized (entries) {
+            entry = entries.get(getKey(pOutput));
+        }
+        if (entry == null) {
+            log.debug("No dependencies recorded for " + pOutput);
+            return false;
+        }
+        if (pOutput.lastModified() != entry.lastModified || pOutput.length() != entry.length) {
+            log.debug("Output file " + pOutput + " has been modified, or removed.");
+            return false;
+        }
+        for (Map.Entry<String, Dependency> dependency : entry.dependencies.entrySet()) {
+            if (!isUnchanged(dependency.getKey(), dependency.getValue())) {
+                log.debug("Output file " + pOutput + " is outdated, because " + dependency.getKey()
+                        + " has been modified.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isUnchanged(String pSystemId, Dependency pDependency) {
+        Boolean result = unchangedDependencies.get(pSystemId);
+        if (result == null) {
+            final File f = asFile(pSystemId);
+            if (f != null && f.lastModified() == pDependency.lastModified && f.length() == pDependency.length) {
+                result = Boolean.TRUE;
+            } else {
+                result = Boolean.valueOf(pDependency.hash.equals(getDependency(pSystemId).hash));
+            }
+            unchangedDependencies.put(pSystemId, result);
+        }
+        return result.booleanValue();
+    }
+
+    private Dependency getDependency(String pSystemId) {
+        Dependency dependency = currentDependencies.get(pSystemId);
+        if (dependency == null) {
+            final File f = asFile(pSystemId);
+            String hash = null;
+            try {
+                hash = ContentHash.of(new URL(pSystemId));
+            } catch (MalformedURLException e) {
+                // Ignore me, treated like an unreadable resource
+            }
+            if (hash == null) {
+                // The resource is unavailable, for example a document, which the stylesheet probes with
+                // document(). Record that, so that creating the resource triggers a new transformation.
+                hash = "-";
+            }
+            dependency = f == null ? new Dependency(-1, -1, hash) : new Dependency(f.lastModified(), f.length(), hash);
+            currentDependencies.put(pSystemId, dependency);
+        }
+        return dependency;
+    }
+
+    private static File asFile(String pSystemId) {
+        if (!pSystemId.startsWith("file:")) {
+            return null;
+        }
+        try {
+            return new File(new URI(pSystemId));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the resources, which have been read while creating the given output file.
+     *
+     * @param pOutput    The output file, which has just been created.
+     * @param pSystemIds The system ID's of the resources, which have been read.
+     */
+    void put(File pOutput, Collection<String> pSystemIds) {
+        final Map<String, Dependency> dependencies = new LinkedHashMap<String, Dependency>();
+        for (String systemId : pSystemIds) {
+            if (systemId.indexOf('\t') == -1 && systemId.indexOf('\n') == -1 && systemId.indexOf('\r') == -1) {
+                dependencies.put(systemId, getDependency(systemId));
+            }
+        }
+        final Entry entry = new Entry(pOutput.lastModified(), pOutput.length(), dependencies);
+        synchronized (entries) {
+            entries.put(getKey(pOutput), entry);
+        }
+    }
+
+    /**
+     * Removes entries for all output files, which aren't in the given collection.
+     */
+    void retain(Collection<File> pOutputs) {
+        final Set<String> keys = new HashSet<String>();
+        for (File output : pOutputs) {
+            keys.add(getKey(output));
+        }
+        synchronized (entries) {
+            entries.keySet().retainAll(keys);
+        }
+    }
+
+    /**
+     * Writes the manifest.
+     */
+    void save() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final Entry e = entry.getValue();
+                lines.add("O\t" + e.lastModified + "\t" + e.length + "\t" + entry.getKey());
+                for (Map.Entry<String, Dependency> dependency : e.dependencies.entrySet()) {
+                    final Dependency d = dependency.getValue();
+                    lines.add("D\t" + d.lastModified + "\t" + d.length + "\t" + d.hash + "\t" + dependency.getKey());
+                }
+            }
+        }
+        final File tmpFile = AtomicFiles.newTempFile(file);
+        try {
+            final Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+            try {
+                w.write(HEADER + configuration);
+                w.write('\n');
+                for (String line : lines) {
+                    w.write(line);
+                    w.write('\n');
+                }
+            } finally {
+                w.close();
+            }
+            AtomicFiles.publish(tmpFile, file);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * A {@link URIResolver}, which keeps the parsed trees of documents, which are served by a {@link Resolver}, for
+ * example documents, which are loaded by the document() function. Entries are keyed by the documents system ID, its
+ * last modification time, and the resolvers configuration. The cache is bounded by the estimated total memory of the
+ * cached trees, and evicts the least recently used entries first.
+ * <p>
+ * DOM trees are not safe for use by multiple threads, so every worker thread has its own instance. Only local files
+ * are cached, other resources are passed through.
+ */
+class DocumentCache implements URIResolver {
+    private static class Entry {
+        final Node node;
+        final long size;
+        final Set<String> dependencies;
+
+        Entry(Node pNode, long pSize, Set<String> pDependencies) {
+            node = pNode;
+            size = pSize;
+            dependencies = pDependencies;
+        }
+    }
+
+    /**
+     * The estimated memory, in bytes, which is occupied by a single DOM node, excluding its strings.
+     */
+    private static final int NODE_SIZE = 64;
+
+    private final Resolver resolver;
+
+    private final TransformerFactory transformerFactory;
+
+    private final long maxSize;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private long size;
+
+    private long hits, misses, evictions;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pResolver           The resolver, which is used to locate, and parse, documents.
+     * @param pTransformerFactory The factory, which is used to create the parsed trees.
+     * @param pMaxSize            The maximum estimated memory of the cached trees, in bytes.
+     */
+    DocumentCache(Resolver pResolver, TransformerFactory pTransformerFactory, long pMaxSize) {
+        resolver = pResolver;
+        transformerFactory = pTransformerFactory;
+        maxSize = pMaxSize;
+    }
+
+    public Source resolve(String pHref, String pBase) throws TransformerException {
+        final Collection<String> recorder = resolver.getRecorder();
+        final Set<String> dependencies = new LinkedHashSet<String>();
+        resolver.setRecorder(dependencies);
+        final Source source;
+        try {
+            source = resolver.resolve(pHref, pBase);
+        } finally {
+            resolver.setRecorder(recorder);
+        }
+        if (recorder != null) {
+            recorder.addAll(dependencies);
+        }
+        final File file = source == null ? null : asFile(source.getSystemId());
+        if (file == null) {
+            return source;
+        }
+        final String systemId = source.getSystemId();
+        final String key = systemId
+                + '\n'
+                + file.lastModified()
+                + '\n'
+                + resolver.isXincludeAware()
+                + ','
+                + resolver.isValidating();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            close(source);
+            hits++;
+            if (recorder != null) {
+                recorder.addAll(entry.dependencies);
+            }
+            return new DOMSource(entry.node, systemId);
+        }
+        misses++;
+        final Transformer identity;
+        synchronized (transformerFactory) {
+            identity = transformerFactory.newTransformer();
+        }
+        final DOMResult result = new DOMResult();
+        resolver.setRecorder(dependencies);
+        try {
+            identity.transform(source, result);
+        } finally {
+            resolver.setRecorder(recorder);
+        }
+        if (recorder != null) {
+            recorder.addAll(dependencies);
+        }
+        entry = new Entry(result.getNode(), getSize(result.getNode()), dependencies);
+        if (entry.size <= maxSize) {
+            entries.put(key, entry);
+            size += entry.size;
+            for (Iterator<Entry> iter = entries.values().iterator(); size > maxSize && iter.hasNext(); ) {
+                size -= iter.next().size;
+                iter.remove();
+                evictions++;
+            }
+        }
+        return new DOMSource(entry.node, systemId);
+    }
+
+    /**
+     * Returns an estimate of the memory, in bytes, which is occupied by the given tree: A fixed size per node, and
+     * two bytes per character of the nodes names, and values.
+     */
+    static long getSize(Node pNode) {
+        long result = 0;
+        Node node = pNode;
+        while (node != null) {
+            result += getNodeSize(node);
+            final NamedNodeMap attributes = node.getAttributes();
+            if (attributes != null) {
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    result += getNodeSize(attributes.item(i));
+                }
+            }
+            Node next = node.getFirstChild();
+            while (next == null && node != pNode) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+        return result;
+    }
+
+    private static long getNodeSize(Node pNode) {
+        return NODE_SIZE + 2L * (length(pNode.getNodeName()) + length(pNode.getNodeValue()));
+    }
+
+    private static int length(String pValue) {
+        return pValue == null ? 0 : pValue.length();
+    }
+
+    private static void close(Source pSource) {
+        if (pSource instanceof SAXSource) {
+            final InputSource isource = ((SAXSource) pSource).getInputSource();
+            if (isource != null) {
+                try {
+                    if (isource.getByteStream() != null) {
+                        isource.getByteStream().close();
+                    }
+                    if (isource.getCharacterStream() != null) {
+                        isource.getCharacterStream().close();
+                    }
+                } catch (IOException e) {
+                    // Ignore me
+                }
+            }
+        }
+    }
+
+    private static File asFile(String pSystemId) {
+        if (pSystemId == null || !pSystemId.startsWith("file:")) {
+            return null;
+        }
+        try {
+            final File file = new File(new URI(pSystemId));
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+}
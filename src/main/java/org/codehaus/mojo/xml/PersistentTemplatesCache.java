@@ -0,0 +1,328 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.transform.Templates;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A directory with compiled stylesheets, which survives the JVM. Many XSLT processors (in particular the JDK's
+ * builtin XSLTC, and Xalan) have {@link Serializable} implementations of {@link Templates}. These are stored in the
+ * cache directory, along with the content hashes of all modules, which have been imported, or included, when the
+ * stylesheet was compiled. An entry is only used, if all of these modules are unchanged.
+ * <p>
+ * Loading an entry is equivalent to executing code: A compiled stylesheet of XSLTC contains the bytecode of the
+ * translet, which is defined, and run, when the stylesheet is used. Restricting deserialization to the classes of
+ * the Java runtime, and the XSLT processor, doesn't change that. Therefore, every entry carries a HMAC of its
+ * content, which is computed with a secret key of the current user. The key is created on first use, and stored in
+ * the configured key file, readable by the user only. Entries, which have been modified, or written by another user,
+ * are ignored before anything is deserialized, and replaced. If the key file cannot be created, for example, because
+ * its directory is read only, then the cache is disabled.
+ */
+class PersistentTemplatesCache {
+    private static final int VERSION = 2;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final int KEY_LENGTH = 32;
+
+    private final File dir;
+
+    private final File keyFile;
+
+    private final Log log;
+
+    /**
+     * The key files, which cannot be created, or read. Guarded by the class lock.
+     */
+    private static final Set<File> unusableKeyFiles = new HashSet<File>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pDir     The cache directory.
+     * @param pKeyFile The file with the secret key, which is created, if necessary.
+     * @param pLog     The logger.
+     */
+    PersistentTemplatesCache(File pDir, File pKeyFile, Log pLog) {
+        dir = pDir;
+        keyFile = pKeyFile;
+        log = pLog;
+    }
+
+    private File getFile(String pKey) {
+        return new File(dir, pKey + ".templates");
+    }
+
+    /**
+     * Loads a compiled stylesheet from the cache.
+     *
+     * @param pKey          The cache key.
+     * @param pFactoryClass The XSLT processors transformer factory class.
+     * @param pModules      The modules, on which the stylesheet depends, are added to this map.
+     * @return The compiled stylesheet, or null, if no valid cache entry is available.
+     */
+    Templates load(String pKey, Class<?> pFactoryClass, Map<String, String> pModules) {
+        final File file = getFile(pKey);
+        final ClassLoader classLoader = pFactoryClass.getClassLoader();
+        final String vendorPrefix = getVendorPrefix(pFactoryClass.getName());
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable compiled stylesheet " + file + ": " + e.getMessage());
+            return null;
+        }
+        try {
+            final int offset = 4 + KEY_LENGTH;
+            if (content.length < offset || ByteBuffer.wrap(content).getInt() != VERSION) {
+                log.debug("Ignoring compiled stylesheet " + file + " with unsupported version");
+                return null;
+            }
+            final byte[] key = getSecretKeyOrNull();
+            if (key == null) {
+                return null;
+            }
+            final byte[] mac = mac(key, content, offset);
+            if (!MessageDigest.isEqual(mac, Arrays.copyOfRange(content, 4, offset))) {
+                log.warn("Ignoring compiled stylesheet " + file
+                        + ", because it has been modified, or written by another user");
+                return null;
+            }
+            final ObjectInputStream ois =
+                    new ObjectInputStream(new ByteArrayInputStream(content, offset, content.length - offset)) {
+                        @Override
+                        protected Class<?> resolveClass(ObjectStreamClass pDesc)
+                                throws IOException, ClassNotFoundException {
+                            final String name = pDesc.getName();
+                            if (!isTrusted(name, vendorPrefix)) {
+                                throw new InvalidClassException(name, "Class not permitted in compiled stylesheet");
+                            }
+                            if (classLoader != null) {
+                                try {
+                                    return Class.forName(name, false, classLoader);
+                                } catch (ClassNotFoundException e) {
+                                    // Fall through to the default handling
+                                }
+                            }
+                            return super.resolveClass(pDesc);
+                        }
+                    };
+            @SuppressWarnings("unchecked")
+            final Map<String, String> modules = (Map<String, String>) ois.readObject();
+            if (!TemplatesCache.isUnchanged(modules)) {
+                log.debug("Ignoring compiled stylesheet " + file + ", because imported modules have changed");
+                return null;
+            }
+            final Templates templates = (Templates) ois.readObject();
+            pModules.putAll(modules);
+            return templates;
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable compiled stylesheet " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a compiled stylesheet in the cache, if it is serializable. Failures are logged, but otherwise ignored.
+     *
+     * @param pKey       The cache key.
+     * @param pTemplates The compiled stylesheet.
+     * @param pModules   The modules, on which the stylesheet depends, mapped to their content hashes.
+     */
+    void store(String pKey, Templates pTemplates, Map<String, String> pModules) {
+        if (!(pTemplates instanceof Serializable)) {
+            log.debug("Compiled stylesheets of type " + pTemplates.getClass().getName() + " are not serializable.");
+            return;
+        }
+        final byte[] key = getSecretKeyOrNull();
+        if (key == null) {
+            return;
+        }
+        final File file = getFile(pKey);
+        File tmpFile = null;
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(pModules);
+            oos.writeObject(pTemplates);
+            oos.close();
+            final byte[] content = baos.toByteArray();
+            final byte[] mac = mac(key, content, 0);
+            tmpFile = AtomicFiles.newTempFile(file);
+            final DataOutputStream dos = new DataOutputStream(new FileOutputStream(tmpFile));
+            try {
+                dos.writeInt(VERSION);
+                dos.write(mac);
+                dos.write(content);
+            } finally {
+                dos.close();
+            }
+            AtomicFiles.publish(tmpFile, file);
+            tmpFile = null;
+            log.debug("Stored compiled stylesheet " + file);
+        } catch (IOException e) {
+            log.warn("Failed to store compiled stylesheet " + file + ": " + e.getMessage());
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static byte[] mac(byte[] pKey, byte[] pContent, int pOffset) {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(pKey, MAC_ALGORITHM));
+            mac.update(pContent, pOffset, pContent.length - pOffset);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute " + MAC_ALGORITHM + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the current users secret key, or null, if the key file cannot be created, or read. In the latter case,
+     * the cache is disabled, which is logged once per key file.
+     */
+    private byte[] getSecretKeyOrNull() {
+        synchronized (PersistentTemplatesCache.class) {
+            final File file = keyFile.getAbsoluteFile();
+            if (unusableKeyFiles.contains(file)) {
+                return null;
+            }
+            try {
+                return getSecretKey();
+            } catch (IOException e) {
+                unusableKeyFiles.add(file);
+                log.info("The persistent templates cache is disabled, because the secret key " + file
+                        + " cannot be created, or read: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the current users secret key. The key file is created, if necessary, and made readable by the owner
+     * only, if the file system supports POSIX permissions.
+     */
+    private byte[] getSecretKey() throws IOException {
+        synchronized (PersistentTemplatesCache.class) {
+            final Path path = keyFile.getAbsoluteFile().toPath();
+            if (!Files.isRegularFile(path)) {
+                final boolean posix =
+                        FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+                final FileAttribute<?>[] dirAttributes = posix
+                        ? new FileAttribute<?>[] {
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+                        }
+                        : new FileAttribute<?>[0];
+                final FileAttribute<?>[] fileAttributes = posix
+                        ? new FileAttribute<?>[] {
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))
+                        }
+                        : new FileAttribute<?>[0];
+                Files.createDirectories(path.getParent(), dirAttributes);
+                final byte[] key = new byte[KEY_LENGTH];
+                new SecureRandom().nextBytes(key);
+                final Path tmpFile = Files.createTempFile(
+                        path.getParent(), path.getFileName().toString(), ".tmp", fileAttributes);
+                try {
+                    final OutputStream stream = Files.newOutputStream(tmpFile);
+                    try {
+                        stream.write(key);
+                    } finally {
+                        stream.close();
+                    }
+                    // Fails, if another process has created the key meanwhile, in which case that key is used.
+                    Files.move(tmpFile, path);
+                    log.debug("Created secret key " + path + " for compiled stylesheets");
+                } catch (FileAlreadyExistsException e) {
+                    // Ignore me
+                } finally {
+                    Files.deleteIfExists(tmpFile);
+                }
+            }
+            final byte[] key = Files.readAllBytes(path);
+            if (key.length != KEY_LENGTH) {
+                throw new IOException("Invalid secret key " + path + ", delete the file to create a new one");
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Returns, whether instances of the given class may be deserialized: Permitted are classes of the Java runtime,
+     * and classes from the same vendor package (for example "org.apache", or "com.sun") as the XSLT processor. This
+     * only narrows the attack surface: The entries integrity is protected by the HMAC.
+     */
+    private static boolean isTrusted(String pName, String pVendorPrefix) {
+        String name = pName;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() == 1) {
+            return true; // Array of primitive types
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.startsWith("java.") || name.startsWith("javax.xml.") || name.startsWith(pVendorPrefix);
+    }
+
+    private static String getVendorPrefix(String pClassName) {
+        final int offset = pClassName.indexOf('.');
+        final int end = offset == -1 ? -1 : pClassName.indexOf('.', offset + 1);
+        return end == -1 ? pClassName + "." : pClassName.substring(0, end + 1);
+    }
+}
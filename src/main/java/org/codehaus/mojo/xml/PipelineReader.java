@@ -0,0 +1,130 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+
+import java.io.IOException;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * An XML reader, which doesn't parse a document, but runs a transformation, and reports its result as SAX events.
+ * It chains the stages of a pipeline, so that every stage is a {@link Transformer}, which may be reused for
+ * multiple files, rather than a {@link javax.xml.transform.sax.TransformerHandler}, which can be used for a single
+ * transformation only.
+ */
+class PipelineReader extends XMLFilterImpl {
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+
+    private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+    private final Transformer transformer;
+
+    private final Source source;
+
+    private LexicalHandler lexicalHandler;
+
+    private PipelineReader(Transformer pTransformer, Source pSource) {
+        transformer = pTransformer;
+        source = pSource;
+    }
+
+    /**
+     * Returns the source of a pipelines last stage.
+     *
+     * @param pStages   The transformers of the pipelines stages.
+     * @param pSource   The pipelines input document, which is the source of the first stage.
+     * @param pSystemId The input documents system ID, which is the base URI of all stages.
+     */
+    static Source newSource(Transformer[] pStages, Source pSource, String pSystemId) {
+        Source source = pSource;
+        for (int i = 0; i < pStages.length - 1; i++) {
+            source = new SAXSource(new PipelineReader(pStages[i], source), new InputSource(pSystemId));
+        }
+        return source;
+    }
+
+    @Override
+    public boolean getFeature(String pName) throws SAXNotRecognizedException {
+        if (NAMESPACES.equals(pName)) {
+            return true;
+        }
+        if (NAMESPACE_PREFIXES.equals(pName)) {
+            return false;
+        }
+        throw new SAXNotRecognizedException(pName);
+    }
+
+    @Override
+    public void setFeature(String pName, boolean pValue) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (getFeature(pName) != pValue) {
+            throw new SAXNotSupportedException(pName);
+        }
+    }
+
+    @Override
+    public Object getProperty(String pName) throws SAXNotRecognizedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            return lexicalHandler;
+        }
+        throw new SAXNotRecognizedException(pName);
+    }
+
+    @Override
+    public void setProperty(String pName, Object pValue) throws SAXNotRecognizedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            lexicalHandler = (LexicalHandler) pValue;
+        } else {
+            throw new SAXNotRecognizedException(pName);
+        }
+    }
+
+    @Override
+    public void parse(InputSource pInput) throws SAXException, IOException {
+        transform();
+    }
+
+    @Override
+    public void parse(String pSystemId) throws SAXException, IOException {
+        transform();
+    }
+
+    private void transform() throws SAXException {
+        final SAXResult result = new SAXResult(getContentHandler());
+        result.setLexicalHandler(lexicalHandler);
+        try {
+            transformer.transform(source, result);
+        } catch (TransformerException e) {
+            throw new SAXException(e.getMessageAndLocation(), e);
+        }
+    }
+}
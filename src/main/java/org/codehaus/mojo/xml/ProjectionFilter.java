@@ -0,0 +1,447 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.mojo.xml.transformer.Projection;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter, which applies a {@link Projection} to a document: Elements, which are neither kept, nor ancestors of
+ * kept elements, are removed, including their content, before the transformer builds its tree. As a path, which
+ * matches at any depth (like "//name"), may match below any element, an ancestor is only passed on, when its first
+ * kept descendant is found. Until then, the filter keeps the names, and attributes, of the open elements in memory.
+ * The document element is always passed on, so that the result is a well formed document, even if nothing is kept.
+ * An instance must be used for a single parse only.
+ */
+class ProjectionFilter extends XMLFilterImpl implements LexicalHandler {
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    /**
+     * A compiled path. Instances are immutable, and may be shared by multiple filters.
+     */
+    static final class Path {
+        private final boolean anywhere;
+        private final String[] namespaceURIs;
+        private final String[] localNames;
+
+        private Path(String pPath) {
+            String path = pPath;
+            if (path.startsWith("//")) {
+                anywhere = true;
+                path = path.substring(2);
+            } else if (path.startsWith("/")) {
+                anywhere = false;
+                path = path.substring(1);
+            } else {
+                anywhere = true;
+            }
+            final List<String> steps = new ArrayList<String>();
+            int start = 0;
+            boolean inUri = false;
+            for (int i = 0; i < path.length(); i++) {
+                final char c = path.charAt(i);
+                if (c == '{') {
+                    inUri = true;
+                } else if (c == '}') {
+                    inUri = false;
+                } else if (c == '/' && !inUri) {
+                    steps.add(path.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            steps.add(path.substring(start));
+            namespaceURIs = new String[steps.size()];
+            localNames = new String[steps.size()];
+            for (int i = 0; i < steps.size(); i++) {
+                final String step = steps.get(i);
+                if (step.length() == 0) {
+                    throw new IllegalArgumentException("Invalid projection path: " + pPath);
+                }
+                final String localName;
+                if (step.startsWith("{")) {
+                    final int offset = step.indexOf('}');
+                    if (offset == -1) {
+                        throw new IllegalArgumentException("Invalid projection path: " + pPath);
+                    }
+                    namespaceURIs[i] = step.substring(1, offset);
+                    localName = step.substring(offset + 1);
+                } else {
+                    localName = step;
+                }
+                localNames[i] = "*".equals(localName) ? null : localName;
+            }
+        }
+
+        private boolean matches(List<String> pNamespaceURIs, List<String> pLocalNames, int pStart, int pLength) {
+            for (int i = 0; i < pLength; i++) {
+                final String namespaceURI = namespaceURIs[i];
+                final String localName = localNames[i];
+                if ((namespaceURI != null && !namespaceURI.equals(pNamespaceURIs.get(pStart + i)))
+                        || (localName != null && !localName.equals(pLocalNames.get(pStart + i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns, whether the path matches the element with the given ancestors.
+         */
+        private boolean matches(List<String> pNamespaceURIs, List<String> pLocalNames) {
+            final int depth = pLocalNames.size();
+            final int length = localNames.length;
+            if (anywhere) {
+                return depth >= length && matches(pNamespaceURIs, pLocalNames, depth - length, length);
+            }
+            return depth == length && matches(pNamespaceURIs, pLocalNames, 0, length);
+        }
+
+        /**
+         * Returns, whether the path may match descendants of the element with the given ancestors.
+         */
+        private boolean matchesAncestor(List<String> pNamespaceURIs, List<String> pLocalNames) {
+            if (anywhere) {
+                return true;
+            }
+            final int depth = pLocalNames.size();
+            return depth < localNames.length && matches(pNamespaceURIs, pLocalNames, 0, depth);
+        }
+    }
+
+    /**
+     * A compiled projection. Instances are immutable, and may be shared by multiple filters.
+     */
+    static final class Paths {
+        private final List<Path> keep;
+        private final List<Path> drop;
+
+        private Paths(List<Path> pKeep, List<Path> pDrop) {
+            keep = pKeep;
+            drop = pDrop;
+        }
+    }
+
+    private final Paths paths;
+
+    private LexicalHandler lexicalHandler;
+
+    private final List<String> namespaceURIs = new ArrayList<String>();
+
+    private final List<String> localNames = new ArrayList<String>();
+
+    private final Map<String, String> pendingPrefixes = new LinkedHashMap<String, String>();
+
+    /**
+     * An open element, which hasn't been dropped.
+     */
+    private static final class Element {
+        private final String namespaceURI;
+        private final String localName;
+        private final String qName;
+        private final Map<String, String> prefixes;
+        private Attributes attributes;
+        private boolean started;
+
+        Element(String pNamespaceURI, String pLocalName, String pQName, Map<String, String> pPrefixes) {
+            namespaceURI = pNamespaceURI;
+            localName = pLocalName;
+            qName = pQName;
+            prefixes = pPrefixes;
+        }
+    }
+
+    /**
+     * The open elements, which haven't been dropped. The innermost element is the first.
+     */
+    private final Deque<Element> elements = new ArrayDeque<Element>();
+
+    private int dropDepth;
+
+    /**
+     * Whether the content of the document element is removed, because the element has been dropped, or cannot
+     * contain kept elements. The element itself is passed on anyway.
+     */
+    private boolean rootDropped;
+
+    private int keepDepth;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pParent The reader, which parses the input document.
+     * @param pPaths  The compiled projection.
+     */
+    ProjectionFilter(XMLReader pParent, Paths pPaths) {
+        super(pParent);
+        paths = pPaths;
+    }
+
+    /**
+     * Compiles the given projection.
+     *
+     * @return The compiled projection, or null, if the projection is null, or empty.
+     * @throws IllegalArgumentException A path is invalid.
+     */
+    static Paths compile(Projection pProjection) {
+        if (pProjection == null) {
+            return null;
+        }
+        final List<Path> keep = compile(pProjection.getKeep());
+        final List<Path> drop = compile(pProjection.getDrop());
+        return keep.isEmpty() && drop.isEmpty() ? null : new Paths(keep, drop);
+    }
+
+    private static List<Path> compile(String[] pPaths) {
+        if (pPaths == null || pPaths.length == 0) {
+            return Collections.emptyList();
+        }
+        final List<Path> result = new ArrayList<Path>(pPaths.length);
+        for (String path : pPaths) {
+            if (path == null || path.trim().length() == 0) {
+                throw new IllegalArgumentException("A projection contains an empty path.");
+            }
+            result.add(new Path(path.trim()));
+        }
+        return result;
+    }
+
+    private static boolean matches(List<Path> pPaths, List<String> pNamespaceURIs, List<String> pLocalNames) {
+        for (Path path : pPaths) {
+            if (path.matches(pNamespaceURIs, pLocalNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isKeepingAncestor() {
+        for (Path path : paths.keep) {
+            if (path.matchesAncestor(namespaceURIs, localNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns, whether text, comments, and processing instructions are passed to the content handler.
+     */
+    private boolean isKeepingContent() {
+        return dropDepth == 0 && (localNames.isEmpty() || (!rootDropped && (keepDepth > 0 || paths.keep.isEmpty())));
+    }
+
+    @Override
+    public Object getProperty(String pName) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            return lexicalHandler;
+        }
+        return super.getProperty(pName);
+    }
+
+    @Override
+    public void setProperty(String pName, Object pValue) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            // Lexical events must pass the filter as well, so that comments within removed elements are removed.
+            lexicalHandler = (LexicalHandler) pValue;
+            super.setProperty(pName, this);
+        } else {
+            super.setProperty(pName, pValue);
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(String pPrefix, String pUri) {
+        if (dropDepth == 0) {
+            pendingPrefixes.put(pPrefix, pUri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(String pPrefix) {
+        // Ignore me, the mappings are ended by endElement().
+    }
+
+    @Override
+    public void startElement(String pNamespaceURI, String pLocalName, String pQName, Attributes pAttributes)
+            throws SAXException {
+        if (dropDepth > 0) {
+            dropDepth++;
+            pendingPrefixes.clear();
+            return;
+        }
+        namespaceURIs.add(pNamespaceURI == null ? "" : pNamespaceURI);
+        localNames.add(pLocalName);
+        final boolean root = localNames.size() == 1;
+        final boolean keep;
+        boolean ancestor = false;
+        if (rootDropped || matches(paths.drop, namespaceURIs, localNames)) {
+            keep = false;
+        } else if (keepDepth > 0) {
+            keepDepth++;
+            keep = true;
+        } else if (paths.keep.isEmpty()) {
+            keep = true;
+        } else if (matches(paths.keep, namespaceURIs, localNames)) {
+            keepDepth = 1;
+            keep = true;
+        } else {
+            // The ancestors of kept elements are retained without their content.
+            keep = false;
+            ancestor = isKeepingAncestor();
+        }
+        if (!keep && !ancestor && !root) {
+            namespaceURIs.remove(namespaceURIs.size() - 1);
+            localNames.remove(localNames.size() - 1);
+            pendingPrefixes.clear();
+            dropDepth = 1;
+            return;
+        }
+        final Map<String, String> prefixes = pendingPrefixes.isEmpty()
+                ? Collections.<String, String>emptyMap()
+                : new LinkedHashMap<String, String>(pendingPrefixes);
+        pendingPrefixes.clear();
+        final Element element = new Element(pNamespaceURI, pLocalName, pQName, prefixes);
+        elements.push(element);
+        if (keep || root) {
+            rootDropped = root && !keep && !ancestor;
+            // The element is passed on, and so are its ancestors, which have been deferred.
+            for (Iterator<Element> iter = elements.descendingIterator(); iter.hasNext(); ) {
+                final Element e = iter.next();
+                if (!e.started) {
+                    start(e, e == element ? pAttributes : e.attributes);
+                }
+            }
+        } else {
+            // An ancestor is deferred, until a kept descendant is found.
+            element.attributes = new AttributesImpl(pAttributes);
+        }
+    }
+
+    private void start(Element pElement, Attributes pAttributes) throws SAXException {
+        for (Map.Entry<String, String> entry : pElement.prefixes.entrySet()) {
+            super.startPrefixMapping(entry.getKey(), entry.getValue());
+        }
+        super.startElement(pElement.namespaceURI, pElement.localName, pElement.qName, pAttributes);
+        pElement.started = true;
+        pElement.attributes = null;
+    }
+
+    @Override
+    public void endElement(String pNamespaceURI, String pLocalName, String pQName) throws SAXException {
+        if (dropDepth > 0) {
+            dropDepth--;
+            return;
+        }
+        final Element element = elements.pop();
+        if (element.started) {
+            super.endElement(pNamespaceURI, pLocalName, pQName);
+            for (String prefix : element.prefixes.keySet()) {
+                super.endPrefixMapping(prefix);
+            }
+        }
+        namespaceURIs.remove(namespaceURIs.size() - 1);
+        localNames.remove(localNames.size() - 1);
+        if (keepDepth > 0) {
+            keepDepth--;
+        }
+        if (localNames.isEmpty()) {
+            rootDropped = false;
+        }
+    }
+
+    @Override
+    public void characters(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (isKeepingContent()) {
+            super.characters(pChars, pOffset, pLength);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (isKeepingContent()) {
+            super.ignorableWhitespace(pChars, pOffset, pLength);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String pTarget, String pData) throws SAXException {
+        if (isKeepingContent()) {
+            super.processingInstruction(pTarget, pData);
+        }
+    }
+
+    public void comment(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (isKeepingContent() && lexicalHandler != null) {
+            lexicalHandler.comment(pChars, pOffset, pLength);
+        }
+    }
+
+    public void startCDATA() throws SAXException {
+        if (isKeepingContent() && lexicalHandler != null) {
+            lexicalHandler.startCDATA();
+        }
+    }
+
+    public void endCDATA() throws SAXException {
+        if (isKeepingContent() && lexicalHandler != null) {
+            lexicalHandler.endCDATA();
+        }
+    }
+
+    public void startDTD(String pName, String pPublicId, String pSystemId) throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.startDTD(pName, pPublicId, pSystemId);
+        }
+    }
+
+    public void endDTD() throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.endDTD();
+        }
+    }
+
+    public void startEntity(String pName) throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            lexicalHandler.startEntity(pName);
+        }
+    }
+
+    public void endEntity(String pName) throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            lexicalHandler.endEntity(pName);
+        }
+    }
+}
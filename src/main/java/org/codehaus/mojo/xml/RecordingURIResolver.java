@@ -0,0 +1,64 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A {@link URIResolver}, which delegates to another resolver, and records the system ID's of all resources, which
+ * have been requested. If the delegate doesn't resolve a URI, then the processor resolves it relative to the base
+ * URI, so the recorded system ID is computed in the same way.
+ */
+class RecordingURIResolver implements URIResolver {
+    private final URIResolver delegate;
+
+    private final Set<String> systemIds = new LinkedHashSet<String>();
+
+    RecordingURIResolver(URIResolver pDelegate) {
+        delegate = pDelegate;
+    }
+
+    public Source resolve(String pHref, String pBase) throws TransformerException {
+        final Source source = delegate == null ? null : delegate.resolve(pHref, pBase);
+        final String systemId;
+        if (source != null && source.getSystemId() != null) {
+            systemId = source.getSystemId();
+        } else {
+            systemId = Resolver.toSystemId(pHref, Resolver.escapeWindowsDriveLetter(pBase));
+        }
+        if (systemId != null) {
+            systemIds.add(systemId);
+        }
+        return source;
+    }
+
+    /**
+     * Returns the system ID's of the resources, which have been requested so far, in the order of their first
+     * request.
+     */
+    Set<String> getSystemIds() {
+        return systemIds;
+    }
+}
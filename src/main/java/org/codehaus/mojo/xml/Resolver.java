@@ -34,6 +34,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -65,6 +66,8 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
 
     private final AbstractXmlMojo.CatalogHandling catalogHandling;
 
+    private Collection<String> recorder;
+
     /**
      * Creates a new instance.
      *
@@ -112,6 +115,12 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
      * Implementation of {@link org.xml.sax.EntityResolver#resolveEntity(String, String)}.
      */
     public InputSource resolveEntity(String pPublicId, String pSystemId) throws SAXException, IOException {
+        final InputSource source = resolveEntity0(pPublicId, pSystemId);
+        record(source == null ? pSystemId : source.getSystemId());
+        return source;
+    }
+
+    private InputSource resolveEntity0(String pPublicId, String pSystemId) throws SAXException, IOException {
         final InputSource source = resolver.resolveEntity(pPublicId, pSystemId);
         if (source != null) {
             return source;
@@ -134,6 +143,16 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
      * Implementation of {@link URIResolver#resolve(String, String)}.
      */
     public Source resolve(String pHref, String pBase) throws TransformerException {
+        final Source source = resolve0(pHref, pBase);
+        if (source != null && source.getSystemId() != null) {
+            record(source.getSystemId());
+        } else {
+            record(toSystemId(pHref, escapeWindowsDriveLetter(pBase)));
+        }
+        return source;
+    }
+
+    private Source resolve0(String pHref, String pBase) throws TransformerException {
 
         URL url = null;
 
@@ -199,6 +218,16 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
      */
     public LSInput resolveResource(
             String pType, String pNamespaceURI, String pPublicId, String pSystemId, String pBaseURI) {
+        final LSInput input = resolveResource0(pNamespaceURI, pPublicId, pSystemId, pBaseURI);
+        if (input != null && input.getSystemId() != null) {
+            record(input.getSystemId());
+        } else {
+            record(toSystemId(pSystemId, escapeWindowsDriveLetter(pBaseURI)));
+        }
+        return input;
+    }
+
+    private LSInput resolveResource0(String pNamespaceURI, String pPublicId, String pSystemId, String pBaseURI) {
         pBaseURI = escapeWindowsDriveLetter(pBaseURI);
         if (pPublicId != null) {
             final InputSource isource = resolver.resolveEntity(pPublicId, pSystemId);
@@ -230,6 +259,49 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
         return isource == null ? null : newLSInput(isource);
     }
 
+    /**
+     * Sets a collection, to which the system ID's of all resources, which are requested from this resolver, are being
+     * added. This includes resources, which the resolver doesn't resolve itself, in which case the system ID is
+     * resolved against the base URI. Used to track the dependencies of a transformation, or validation.
+     * @param pRecorder The collection to add system ID's to, or null to disable recording.
+     */
+    void setRecorder(Collection<String> pRecorder) {
+        recorder = pRecorder;
+    }
+
+    /**
+     * Returns the collection, to which the system ID's of requested resources are being added.
+     * @return The collection, or null, if recording is disabled.
+     */
+    Collection<String> getRecorder() {
+        return recorder;
+    }
+
+    private void record(String pSystemId) {
+        if (recorder != null && pSystemId != null) {
+            recorder.add(pSystemId);
+        }
+    }
+
+    /**
+     * Resolves the given URI against the given base URI.
+     * @return The absolute URI, or null, if the URI cannot be made absolute.
+     */
+    static String toSystemId(String pHref, String pBase) {
+        if (pHref == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(pHref);
+            if (!uri.isAbsolute() && pBase != null) {
+                uri = new URI(pBase).resolve(uri);
+            }
+            return uri.isAbsolute() ? uri.toString() : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
     static String escapeWindowsDriveLetter(String pBaseURI) {
         return pBaseURI == null ? null : pBaseURI.replaceFirst("file:([a-zA-Z]:)", "file:/$1");
     }
@@ -368,6 +440,17 @@ public class Resolver implements EntityResolver2, URIResolver, LSResourceResolve
      */
     public InputSource resolveEntity(String pName, String pPublicId, String pBaseURI, String pSystemId)
             throws SAXException, IOException {
+        final InputSource source = resolveEntity0(pPublicId, pBaseURI, pSystemId);
+        if (source != null && source.getSystemId() != null) {
+            record(source.getSystemId());
+        } else {
+            record(toSystemId(pSystemId, escapeWindowsDriveLetter(pBaseURI)));
+        }
+        return source;
+    }
+
+    private InputSource resolveEntity0(String pPublicId, String pBaseURI, String pSystemId)
+            throws SAXException, IOException {
         final InputSource source = resolver.resolveEntity(pPublicId, pSystemId);
         if (source != null) {
             return source;
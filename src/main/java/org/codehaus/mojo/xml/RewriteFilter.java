@@ -0,0 +1,435 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.XMLConstants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.codehaus.mojo.xml.transformer.RewriteRule;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter, which applies {@link RewriteRule rewrite rules} to a document. The filter keeps only the open
+ * elements, and the text of elements with text replacements, in memory, so that arbitrarily large documents can be
+ * rewritten in constant memory.
+ * <p>
+ * Rules match the original name of an element. Namespace declarations are passed through, and completed, where
+ * required by renamed, or stripped, elements. Stripping the namespace of an element strips its prefixed attributes
+ * as well. An instance must be used for a single parse only.
+ */
+class RewriteFilter extends XMLFilterImpl implements LexicalHandler {
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    /**
+     * A compiled rewrite rule. Instances are immutable, and may be shared by multiple filters.
+     */
+    static final class Rule {
+        private enum Action {
+            RENAME,
+            DROP,
+            SET_ATTRIBUTE,
+            REPLACE_TEXT,
+            STRIP_NAMESPACE
+        }
+
+        private final Action action;
+        private final String namespaceURI;
+        private final String localName;
+        private final String name;
+        private final String value;
+        private final Pattern pattern;
+
+        private Rule(Action pAction, String pMatch, String pName, String pValue, Pattern pPattern) {
+            action = pAction;
+            if (pMatch.startsWith("{")) {
+                final int offset = pMatch.indexOf('}');
+                if (offset == -1) {
+                    throw new IllegalArgumentException("Invalid element name: " + pMatch);
+                }
+                namespaceURI = pMatch.substring(1, offset);
+                localName = "*".equals(pMatch.substring(offset + 1)) ? null : pMatch.substring(offset + 1);
+            } else {
+                namespaceURI = null;
+                localName = "*".equals(pMatch) ? null : pMatch;
+            }
+            name = pName;
+            value = pValue;
+            pattern = pPattern;
+        }
+
+        private boolean matches(String pNamespaceURI, String pLocalName) {
+            return (namespaceURI == null || namespaceURI.equals(pNamespaceURI))
+                    && (localName == null || localName.equals(pLocalName));
+        }
+    }
+
+    /**
+     * An element, which has been passed to the content handler.
+     */
+    private static class Element {
+        final String namespaceURI;
+        final String localName;
+        final String qName;
+        final List<String> prefixes;
+        final List<Rule> textRules;
+
+        Element(String pNamespaceURI, String pLocalName, String pQName, List<String> pPrefixes, List<Rule> pTextRules) {
+            namespaceURI = pNamespaceURI;
+            localName = pLocalName;
+            qName = pQName;
+            prefixes = pPrefixes;
+            textRules = pTextRules;
+        }
+    }
+
+    private final List<Rule> rules;
+
+    private LexicalHandler lexicalHandler;
+
+    private final Map<String, String> pendingPrefixes = new LinkedHashMap<String, String>();
+
+    private final NamespaceSupport namespaces = new NamespaceSupport();
+
+    private final Deque<Element> elements = new ArrayDeque<Element>();
+
+    private final StringBuilder text = new StringBuilder();
+
+    private int dropDepth;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pParent The reader, which parses the input document.
+     * @param pRules  The compiled rules, in the order of their application.
+     */
+    RewriteFilter(XMLReader pParent, List<Rule> pRules) {
+        super(pParent);
+        rules = pRules;
+    }
+
+    /**
+     * Compiles the given rules.
+     *
+     * @throws IllegalArgumentException A rule is invalid.
+     */
+    static List<Rule> compile(RewriteRule[] pRules) {
+        final List<Rule> result = new ArrayList<Rule>(pRules.length);
+        for (RewriteRule rule : pRules) {
+            final String action = rule.getAction();
+            final String match = rule.getMatch();
+            if (match == null || match.length() == 0) {
+                throw new IllegalArgumentException("A rewrite rule requires a nonempty 'match' element.");
+            }
+            if ("rename".equals(action)) {
+                result.add(new Rule(Rule.Action.RENAME, match, require(rule.getName(), action, "name"), null, null));
+            } else if ("drop".equals(action)) {
+                result.add(new Rule(Rule.Action.DROP, match, null, null, null));
+            } else if ("setAttribute".equals(action)) {
+                result.add(new Rule(
+                        Rule.Action.SET_ATTRIBUTE,
+                        match,
+                        require(rule.getName(), action, "name"),
+                        rule.getValue() == null ? "" : rule.getValue(),
+                        null));
+            } else if ("replaceText".equals(action)) {
+                final Pattern pattern;
+                try {
+                    pattern = Pattern.compile(require(rule.getPattern(), action, "pattern"));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid pattern in rewrite rule: " + e.getMessage(), e);
+                }
+                result.add(new Rule(
+                        Rule.Action.REPLACE_TEXT,
+                        match,
+                        null,
+                        rule.getValue() == null ? "" : rule.getValue(),
+                        pattern));
+            } else if ("stripNamespace".equals(action)) {
+                result.add(new Rule(Rule.Action.STRIP_NAMESPACE, match, null, null, null));
+            } else {
+                throw new IllegalArgumentException("Invalid rewrite rule action: " + action
+                        + ", expected rename, drop, setAttribute, replaceText, or stripNamespace");
+            }
+        }
+        return result;
+    }
+
+    private static String require(String pValue, String pAction, String pElement) {
+        if (pValue == null || pValue.length() == 0) {
+            throw new IllegalArgumentException(
+                    "A rewrite rule with action " + pAction + " requires a nonempty '" + pElement + "' element.");
+        }
+        return pValue;
+    }
+
+    @Override
+    public Object getProperty(String pName) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            return lexicalHandler;
+        }
+        return super.getProperty(pName);
+    }
+
+    @Override
+    public void setProperty(String pName, Object pValue) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (LEXICAL_HANDLER.equals(pName)) {
+            // Lexical events must pass the filter as well, so that comments within dropped elements are removed.
+            lexicalHandler = (LexicalHandler) pValue;
+            super.setProperty(pName, this);
+        } else {
+            super.setProperty(pName, pValue);
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(String pPrefix, String pUri) {
+        if (dropDepth == 0) {
+            pendingPrefixes.put(pPrefix, pUri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(String pPrefix) {
+        // Ignore me, the mappings are ended by endElement().
+    }
+
+    @Override
+    public void startElement(String pNamespaceURI, String pLocalName, String pQName, Attributes pAttributes)
+            throws SAXException {
+        flushText();
+        if (dropDepth > 0) {
+            dropDepth++;
+            pendingPrefixes.clear();
+            return;
+        }
+        String namespaceURI = pNamespaceURI == null ? "" : pNamespaceURI;
+        String localName = pLocalName;
+        final int offset = pQName.indexOf(':');
+        String prefix = offset == -1 ? "" : pQName.substring(0, offset);
+        AttributesImpl attributes = null;
+        List<Rule> textRules = null;
+        for (Rule rule : rules) {
+            if (!rule.matches(pNamespaceURI == null ? "" : pNamespaceURI, pLocalName)) {
+                continue;
+            }
+            switch (rule.action) {
+                case DROP:
+                    pendingPrefixes.clear();
+                    dropDepth = 1;
+                    return;
+                case RENAME:
+                    localName = rule.name;
+                    break;
+                case STRIP_NAMESPACE:
+                    namespaceURI = "";
+                    prefix = "";
+                    attributes = stripNamespaces(attributes == null ? pAttributes : attributes, pQName);
+                    break;
+                case SET_ATTRIBUTE:
+                    if (attributes == null) {
+                        attributes = new AttributesImpl(pAttributes);
+                    }
+                    final int index = attributes.getIndex("", rule.name);
+                    if (index == -1) {
+                        attributes.addAttribute("", rule.name, rule.name, "CDATA", rule.value);
+                    } else {
+                        attributes.setValue(index, rule.value);
+                    }
+                    break;
+                case REPLACE_TEXT:
+                    if (textRules == null) {
+                        textRules = new ArrayList<Rule>();
+                    }
+                    textRules.add(rule);
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid action: " + rule.action);
+            }
+        }
+
+        // Declare the elements prefix, if its binding doesn't match the (possibly stripped) namespace.
+        final String boundUri =
+                pendingPrefixes.containsKey(prefix) ? pendingPrefixes.get(prefix) : namespaces.getURI(prefix);
+        if (!namespaceURI.equals(boundUri == null ? "" : boundUri)) {
+            pendingPrefixes.put(prefix, namespaceURI);
+        }
+        namespaces.pushContext();
+        final List<String> prefixes;
+        if (pendingPrefixes.isEmpty()) {
+            prefixes = Collections.emptyList();
+        } else {
+            prefixes = new ArrayList<String>(pendingPrefixes.keySet());
+            for (Map.Entry<String, String> entry : pendingPrefixes.entrySet()) {
+                namespaces.declarePrefix(entry.getKey(), entry.getValue());
+                super.startPrefixMapping(entry.getKey(), entry.getValue());
+            }
+            pendingPrefixes.clear();
+        }
+        final String qName = prefix.length() == 0 ? localName : prefix + ':' + localName;
+        final Element element = new Element(namespaceURI, localName, qName, prefixes, textRules);
+        elements.push(element);
+        super.startElement(namespaceURI, localName, qName, attributes == null ? pAttributes : attributes);
+    }
+
+    /**
+     * Removes the namespaces of the given attributes, except for the XML namespace, and namespace declarations.
+     *
+     * @throws SAXException Stripping the namespaces would create duplicate attributes.
+     */
+    private static AttributesImpl stripNamespaces(Attributes pAttributes, String pQName) throws SAXException {
+        final AttributesImpl result = new AttributesImpl();
+        for (int i = 0; i < pAttributes.getLength(); i++) {
+            final String uri = pAttributes.getURI(i);
+            final String localName = pAttributes.getLocalName(i);
+            if (uri == null
+                    || uri.length() == 0
+                    || localName == null
+                    || localName.length() == 0
+                    || XMLConstants.XML_NS_URI.equals(uri)
+                    || XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(uri)) {
+                result.addAttribute(
+                        uri, localName, pAttributes.getQName(i), pAttributes.getType(i), pAttributes.getValue(i));
+            } else if (result.getIndex(localName) != -1 || pAttributes.getIndex("", localName) != -1) {
+                throw new SAXException("Stripping the namespaces of element " + pQName
+                        + " would create a duplicate attribute " + localName);
+            } else {
+                result.addAttribute("", localName, localName, pAttributes.getType(i), pAttributes.getValue(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void endElement(String pNamespaceURI, String pLocalName, String pQName) throws SAXException {
+        if (dropDepth > 0) {
+            dropDepth--;
+            return;
+        }
+        flushText();
+        final Element element = elements.pop();
+        super.endElement(element.namespaceURI, element.localName, element.qName);
+        for (String prefix : element.prefixes) {
+            super.endPrefixMapping(prefix);
+        }
+        namespaces.popContext();
+    }
+
+    @Override
+    public void characters(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (dropDepth > 0) {
+            return;
+        }
+        if (!elements.isEmpty() && elements.peek().textRules != null) {
+            // Text may be reported in multiple chunks, so replacements are applied, when the text is complete.
+            text.append(pChars, pOffset, pLength);
+        } else {
+            super.characters(pChars, pOffset, pLength);
+        }
+    }
+
+    private void flushText() throws SAXException {
+        if (text.length() > 0) {
+            String value = text.toString();
+            text.setLength(0);
+            for (Rule rule : elements.peek().textRules) {
+                value = rule.pattern.matcher(value).replaceAll(rule.value);
+            }
+            super.characters(value.toCharArray(), 0, value.length());
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (dropDepth == 0) {
+            flushText();
+            super.ignorableWhitespace(pChars, pOffset, pLength);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String pTarget, String pData) throws SAXException {
+        if (dropDepth == 0) {
+            flushText();
+            super.processingInstruction(pTarget, pData);
+        }
+    }
+
+    public void comment(char[] pChars, int pOffset, int pLength) throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            flushText();
+            lexicalHandler.comment(pChars, pOffset, pLength);
+        }
+    }
+
+    public void startCDATA() throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            flushText();
+            lexicalHandler.startCDATA();
+        }
+    }
+
+    public void endCDATA() throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            flushText();
+            lexicalHandler.endCDATA();
+        }
+    }
+
+    public void startDTD(String pName, String pPublicId, String pSystemId) throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.startDTD(pName, pPublicId, pSystemId);
+        }
+    }
+
+    public void endDTD() throws SAXException {
+        if (lexicalHandler != null) {
+            lexicalHandler.endDTD();
+        }
+    }
+
+    public void startEntity(String pName) throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            lexicalHandler.startEntity(pName);
+        }
+    }
+
+    public void endEntity(String pName) throws SAXException {
+        if (dropDepth == 0 && lexicalHandler != null) {
+            lexicalHandler.endEntity(pName);
+        }
+    }
+}
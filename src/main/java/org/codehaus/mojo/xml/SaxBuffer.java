@@ -0,0 +1,330 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A parsed document, which is kept as a list of SAX events. Unlike a DOM tree, a buffer is immutable, once it has
+ * been recorded, so it can be replayed by multiple threads concurrently.
+ */
+class SaxBuffer extends DefaultHandler implements LexicalHandler {
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+
+    private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+    /**
+     * A single recorded event.
+     */
+    private interface Event {
+        void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler) throws SAXException;
+    }
+
+    /**
+     * The estimated memory, in bytes, which is occupied by a single event, excluding its strings.
+     */
+    private static final int EVENT_SIZE = 32;
+
+    private final List<Event> events = new ArrayList<Event>();
+
+    private long size;
+
+    private boolean inDtd;
+
+    /**
+     * Returns an estimate of the memory, in bytes, which is occupied by the recorded events.
+     */
+    long getSize() {
+        return size;
+    }
+
+    private void add(Event pEvent, int pChars) {
+        events.add(pEvent);
+        size += EVENT_SIZE + 2L * pChars;
+    }
+
+    private static int length(String pValue) {
+        return pValue == null ? 0 : pValue.length();
+    }
+
+    /**
+     * Returns a new source, which replays the recorded events. Every transformation requires its own source.
+     */
+    Source newSource(String pSystemId) {
+        final XMLFilterImpl reader = new XMLFilterImpl() {
+            private LexicalHandler lexicalHandler;
+
+            @Override
+            public boolean getFeature(String pName) throws SAXNotRecognizedException {
+                if (NAMESPACES.equals(pName)) {
+                    return true;
+                }
+                if (NAMESPACE_PREFIXES.equals(pName)) {
+                    return false;
+                }
+                throw new SAXNotRecognizedException(pName);
+            }
+
+            @Override
+            public void setFeature(String pName, boolean pValue)
+                    throws SAXNotRecognizedException, SAXNotSupportedException {
+                if (getFeature(pName) != pValue) {
+                    throw new SAXNotSupportedException(pName);
+                }
+            }
+
+            @Override
+            public Object getProperty(String pName) throws SAXNotRecognizedException {
+                if (LEXICAL_HANDLER.equals(pName)) {
+                    return lexicalHandler;
+                }
+                throw new SAXNotRecognizedException(pName);
+            }
+
+            @Override
+            public void setProperty(String pName, Object pValue) throws SAXNotRecognizedException {
+                if (LEXICAL_HANDLER.equals(pName)) {
+                    lexicalHandler = (LexicalHandler) pValue;
+                } else {
+                    throw new SAXNotRecognizedException(pName);
+                }
+            }
+
+            @Override
+            public void parse(InputSource pInput) throws SAXException, IOException {
+                replay(getContentHandler(), lexicalHandler);
+            }
+
+            @Override
+            public void parse(String pSystemId) throws SAXException, IOException {
+                replay(getContentHandler(), lexicalHandler);
+            }
+        };
+        return new SAXSource(reader, new InputSource(pSystemId));
+    }
+
+    /**
+     * Sends the recorded events to the given handlers.
+     *
+     * @param pLexicalHandler The handler, which receives comments, and similar events, or null.
+     */
+    void replay(ContentHandler pContentHandler, LexicalHandler pLexicalHandler) throws SAXException {
+        for (Event event : events) {
+            event.send(pContentHandler, pLexicalHandler);
+        }
+    }
+
+    @Override
+    public void startDocument() {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.startDocument();
+                    }
+                },
+                0);
+    }
+
+    @Override
+    public void endDocument() {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.endDocument();
+                    }
+                },
+                0);
+    }
+
+    @Override
+    public void startPrefixMapping(final String pPrefix, final String pUri) {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.startPrefixMapping(pPrefix, pUri);
+                    }
+                },
+                length(pPrefix) + length(pUri));
+    }
+
+    @Override
+    public void endPrefixMapping(final String pPrefix) {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.endPrefixMapping(pPrefix);
+                    }
+                },
+                0);
+    }
+
+    @Override
+    public void startElement(
+            final String pNamespaceURI, final String pLocalName, final String pQName, Attributes pAttributes) {
+        final Attributes attributes = new AttributesImpl(pAttributes);
+        int chars = length(pQName) + length(pLocalName);
+        for (int i = 0; i < attributes.getLength(); i++) {
+            chars += length(attributes.getQName(i)) + length(attributes.getValue(i));
+        }
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.startElement(pNamespaceURI, pLocalName, pQName, attributes);
+                    }
+                },
+                chars);
+    }
+
+    @Override
+    public void endElement(final String pNamespaceURI, final String pLocalName, final String pQName) {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.endElement(pNamespaceURI, pLocalName, pQName);
+                    }
+                },
+                0);
+    }
+
+    @Override
+    public void characters(char[] pChars, int pOffset, int pLength) {
+        final char[] chars = new char[pLength];
+        System.arraycopy(pChars, pOffset, chars, 0, pLength);
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.characters(chars, 0, chars.length);
+                    }
+                },
+                pLength);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] pChars, int pOffset, int pLength) {
+        final char[] chars = new char[pLength];
+        System.arraycopy(pChars, pOffset, chars, 0, pLength);
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.ignorableWhitespace(chars, 0, chars.length);
+                    }
+                },
+                pLength);
+    }
+
+    @Override
+    public void processingInstruction(final String pTarget, final String pData) {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        pContentHandler.processingInstruction(pTarget, pData);
+                    }
+                },
+                length(pTarget) + length(pData));
+    }
+
+    public void comment(char[] pChars, int pOffset, int pLength) {
+        if (inDtd) {
+            return;
+        }
+        final char[] chars = new char[pLength];
+        System.arraycopy(pChars, pOffset, chars, 0, pLength);
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        if (pLexicalHandler != null) {
+                            pLexicalHandler.comment(chars, 0, chars.length);
+                        }
+                    }
+                },
+                pLength);
+    }
+
+    public void startCDATA() {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        if (pLexicalHandler != null) {
+                            pLexicalHandler.startCDATA();
+                        }
+                    }
+                },
+                0);
+    }
+
+    public void endCDATA() {
+        add(
+                new Event() {
+                    public void send(ContentHandler pContentHandler, LexicalHandler pLexicalHandler)
+                            throws SAXException {
+                        if (pLexicalHandler != null) {
+                            pLexicalHandler.endCDATA();
+                        }
+                    }
+                },
+                0);
+    }
+
+    public void startDTD(String pName, String pPublicId, String pSystemId) {
+        // The DTD has already been applied, so it isn't recorded.
+        inDtd = true;
+    }
+
+    public void endDTD() {
+        inDtd = false;
+    }
+
+    public void startEntity(String pName) {
+        // Ignore me, entities have already been expanded.
+    }
+
+    public void endEntity(String pName) {
+        // Ignore me
+    }
+}
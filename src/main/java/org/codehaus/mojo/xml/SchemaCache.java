@@ -0,0 +1,160 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.validation.Schema;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JVM wide cache of compiled schemas. The cache is shared by all executions of the validate goal, so that a
+ * schema, which is used by multiple modules of a reactor, is compiled only once. Entries are keyed by the schema
+ * language, the resolved public, and system ID of the schema, and the catalog configuration. The schema documents,
+ * including those, which have been imported, or included, are validated by their content hash, whenever an entry is
+ * reused. Compiled schemas are softly referenced, so that they may be reclaimed by the garbage collector, if memory
+ * is short.
+ */
+final class SchemaCache {
+    private static final SchemaCache INSTANCE = new SchemaCache();
+
+    private static class Entry {
+        final SoftReference<Schema> schema;
+        final Map<String, String> documents;
+
+        Entry(Schema pSchema, Map<String, String> pDocuments) {
+            schema = new SoftReference<Schema>(pSchema);
+            documents = pDocuments;
+        }
+    }
+
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true);
+
+    private int maxSize;
+
+    private long hits, misses, evictions, collections;
+
+    private SchemaCache() {}
+
+    /**
+     * Returns the JVM wide instance.
+     */
+    static SchemaCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of entries. Excess entries are evicted, least recently used first.
+     */
+    synchronized void setMaxSize(int pMaxSize) {
+        maxSize = pMaxSize;
+        evict();
+    }
+
+    /**
+     * Raises the maximum number of entries to the given value, unless it is already larger. The cache is shared by
+     * all modules of a reactor, so a single module must not shrink it for the others.
+     */
+    synchronized void ensureMaxSize(int pMaxSize) {
+        if (pMaxSize > maxSize) {
+            maxSize = pMaxSize;
+        }
+    }
+
+    /**
+     * Returns the compiled schema with the given key, if it is available, and the schema documents are unchanged.
+     *
+     * @param pKey The cache key.
+     * @return The compiled schema, or null.
+     */
+    Schema get(List<Object> pKey) {
+        return get(pKey, null);
+    }
+
+    /**
+     * Returns the compiled schema with the given key, if it is available, and the schema documents are unchanged.
+     *
+     * @param pKey       The cache key.
+     * @param pDocuments If not null, and the compiled schema is found, then the schema documents are added to this
+     *                   map.
+     * @return The compiled schema, or null.
+     */
+    Schema get(List<Object> pKey, Map<String, String> pDocuments) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(pKey);
+        }
+        final Schema schema = entry == null ? null : entry.schema.get();
+        if (schema != null && TemplatesCache.isUnchanged(entry.documents)) {
+            synchronized (this) {
+                hits++;
+            }
+            if (pDocuments != null) {
+                pDocuments.putAll(entry.documents);
+            }
+            return schema;
+        }
+        synchronized (this) {
+            if (entry != null && entries.get(pKey) == entry) {
+                entries.remove(pKey);
+                if (schema == null) {
+                    collections++;
+                }
+            }
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * Adds a compiled schema to the cache.
+     *
+     * @param pKey       The cache key.
+     * @param pSchema    The compiled schema.
+     * @param pDocuments The schema documents, including those, which have been imported, or included, mapped to their
+     *                   content hashes.
+     */
+    synchronized void put(List<Object> pKey, Schema pSchema, Map<String, String> pDocuments) {
+        if (maxSize <= 0) {
+            return;
+        }
+        entries.put(pKey, new Entry(pSchema, pDocuments));
+        evict();
+    }
+
+    private void evict() {
+        for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext() && entries.size() > maxSize; ) {
+            iter.next();
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns a textual representation of the caches statistics, suitable for logging.
+     */
+    synchronized String getStatistics() {
+        return "size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", collected=" + collections;
+    }
+}
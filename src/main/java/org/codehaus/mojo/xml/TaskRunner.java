@@ -0,0 +1,287 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Runs lists of tasks, either in the calling thread, or on a fixed size thread pool, which is shared by all task
+ * lists of a mojo execution. Task lists may be nested, so that a task may run a list of subtasks: A thread, which
+ * waits for the tasks of a list, works on the lists pending tasks, rather than blocking, so that nested lists
+ * cannot exhaust the pool. Regardless of the order, in which the tasks complete, results and failures are reported
+ * in the order of the task list, so that the build output doesn't depend on the number of threads.
+ */
+final class TaskRunner {
+    /**
+     * A single unit of work.
+     */
+    interface Task<T> {
+        T call() throws MojoExecutionException, MojoFailureException;
+    }
+
+    /**
+     * Invoked in the calling thread for every completed task, in the order of the task list.
+     */
+    interface Callback<T> {
+        void done(T pResult) throws MojoExecutionException, MojoFailureException;
+    }
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new instance. The instance must be closed by invoking {@link #close()}.
+     *
+     * @param pThreads The size of the thread pool. With 1, or less, all tasks are run in the calling thread.
+     */
+    TaskRunner(int pThreads) {
+        executor = pThreads <= 1 ? null : Executors.newFixedThreadPool(pThreads, newThreadFactory());
+    }
+
+    /**
+     * Stops the thread pool. Tasks, which are still running, are interrupted.
+     */
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the given tasks. The calling thread runs tasks as well, so that at most pThreads - 1 threads are taken
+     * from the pool.
+     *
+     * @param pThreads  The maximum number of tasks, which are being executed concurrently.
+     * @param pTasks    The tasks to run.
+     * @param pCallback The callback, which is notified about completed tasks, or null.
+     * @throws MojoExecutionException The first task in list order, which failed, threw this exception.
+     * @throws MojoFailureException   The first task in list order, which failed, threw this exception.
+     */
+    <T> void run(int pThreads, List<? extends Task<T>> pTasks, Callback<T> pCallback)
+            throws MojoExecutionException, MojoFailureException {
+        if (executor == null || pThreads <= 1 || pTasks.size() <= 1) {
+            for (Task<T> task : pTasks) {
+                final T result = task.call();
+                if (pCallback != null) {
+                    pCallback.done(result);
+                }
+            }
+            return;
+        }
+
+        final List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(pTasks.size());
+        for (final Task<T> task : pTasks) {
+            futures.add(new FutureTask<T>(new Callable<T>() {
+                public T call() throws Exception {
+                    return task.call();
+                }
+            }));
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final Runnable worker = new Runnable() {
+            public void run() {
+                while (runNext(futures, next)) {
+                    // Continue with the next task.
+                }
+            }
+        };
+        for (int i = 1; i < Math.min(pThreads, pTasks.size()); i++) {
+            executor.execute(worker);
+        }
+        try {
+            for (FutureTask<T> future : futures) {
+                while (!future.isDone() && runNext(futures, next)) {
+                    // Work on pending tasks, rather than blocking a thread, which may be a worker thread.
+                }
+                final T result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    throw rethrow(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while waiting for worker threads", e);
+                }
+                if (pCallback != null) {
+                    pCallback.done(result);
+                }
+            }
+        } finally {
+            // Tasks, which haven't been started, are skipped. Running tasks, on other threads, aren't
+            // interrupted, because the threads are shared.
+            for (FutureTask<T> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the next task of the given list, which hasn't been started yet.
+     *
+     * @return False, if all tasks have already been started.
+     */
+    private static boolean runNext(List<? extends FutureTask<?>> pFutures, AtomicInteger pNext) {
+        final int i = pNext.getAndIncrement();
+        if (i >= pFutures.size()) {
+            return false;
+        }
+        pFutures.get(i).run();
+        return true;
+    }
+
+    /**
+     * Runs the given tasks, which may depend on each other. A task is started only after all tasks, on which it
+     * depends, have completed, so that independent tasks are executed concurrently, while dependent tasks wait only
+     * for the tasks, on which they depend. Tasks, which are ready at the same time, are started in the order of the
+     * task list.
+     *
+     * @param pThreads      The maximum number of tasks, which are being executed concurrently.
+     * @param pTasks        The tasks to run.
+     * @param pDependencies For every task, the indexes of the tasks, on which it depends. Must not be cyclic.
+     * @throws MojoExecutionException A task failed with this exception. No further tasks have been started.
+     * @throws MojoFailureException   A task failed with this exception. No further tasks have been started.
+     */
+    void run(int pThreads, List<? extends Task<?>> pTasks, List<int[]> pDependencies)
+            throws MojoExecutionException, MojoFailureException {
+        final int[] pending = new int[pTasks.size()];
+        final List<List<Integer>> dependents = new ArrayList<List<Integer>>(pTasks.size());
+        for (int i = 0; i < pTasks.size(); i++) {
+            dependents.add(new ArrayList<Integer>());
+        }
+        final TreeSet<Integer> ready = new TreeSet<Integer>();
+        for (int i = 0; i < pTasks.size(); i++) {
+            for (int dependency : pDependencies.get(i)) {
+                pending[i]++;
+                dependents.get(dependency).add(i);
+            }
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int completed = 0;
+        if (executor == null || pThreads <= 1 || pTasks.size() <= 1) {
+            while (!ready.isEmpty()) {
+                final int i = ready.pollFirst();
+                pTasks.get(i).call();
+                completed++;
+                release(i, pending, dependents, ready);
+            }
+        } else {
+            final CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>(pTasks.size());
+            try {
+                int running = 0;
+                while (!ready.isEmpty() || running > 0) {
+                    while (!ready.isEmpty() && running < pThreads) {
+                        final int i = ready.pollFirst();
+                        final Task<?> task = pTasks.get(i);
+                        futures.add(completionService.submit(new Callable<Integer>() {
+                            public Integer call() throws Exception {
+                                task.call();
+                                return i;
+                            }
+                        }));
+                        running++;
+                    }
+                    final int i;
+                    try {
+                        i = completionService.take().get();
+                    } catch (ExecutionException e) {
+                        throw rethrow(e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new MojoExecutionException("Interrupted while waiting for worker threads", e);
+                    }
+                    running--;
+                    completed++;
+                    release(i, pending, dependents, ready);
+                }
+            } finally {
+                for (Future<Integer> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        if (completed < pTasks.size()) {
+            throw new IllegalStateException("Cyclic dependencies between tasks");
+        }
+    }
+
+    private static void release(int pTask, int[] pPending, List<List<Integer>> pDependents, Set<Integer> pReady) {
+        for (int dependent : pDependents.get(pTask)) {
+            if (--pPending[dependent] == 0) {
+                pReady.add(dependent);
+            }
+        }
+    }
+
+    /**
+     * Rethrows the exception, which caused a task to fail.
+     */
+    private static MojoExecutionException rethrow(ExecutionException pException)
+            throws MojoExecutionException, MojoFailureException {
+        final Throwable t = pException.getCause();
+        if (t instanceof MojoExecutionException) {
+            throw (MojoExecutionException) t;
+        }
+        if (t instanceof MojoFailureException) {
+            throw (MojoFailureException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new MojoExecutionException(t.getMessage(), t);
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        final int poolNumber = POOL_NUMBER.incrementAndGet();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadFactory() {
+            public Thread newThread(Runnable pRunnable) {
+                final Thread t = new Thread(
+                        pRunnable, "xml-maven-plugin-" + poolNumber + "-worker-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                t.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+                return t;
+            }
+        };
+    }
+}
@@ -0,0 +1,297 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Transformer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the invocation counts, and the inclusive, and exclusive times of templates, and extension functions,
+ * across all transformations of a transformation set. The profiler attaches a trace listener to the transformers,
+ * which requires engine specific hooks: Currently, these are available for Xalan only. Instances are thread safe.
+ */
+class TemplateProfiler {
+    private static final String XALAN_LISTENER = "org.apache.xalan.trace.TraceListenerEx3";
+    private static final String XALAN_BASE_LISTENER = "org.apache.xalan.trace.TraceListener";
+    private static final String XALAN_TEMPLATE = "org.apache.xalan.templates.ElemTemplate";
+    private static final String FUNCTION_MODE = "#function";
+
+    /**
+     * The statistics of a single template, or function.
+     */
+    static class Entry {
+        final String name;
+        final String mode;
+        final String location;
+        final LongAdder calls = new LongAdder();
+        final LongAdder inclusiveNanos = new LongAdder();
+        final LongAdder exclusiveNanos = new LongAdder();
+
+        Entry(String pName, String pMode, String pLocation) {
+            name = pName;
+            mode = pMode;
+            location = pLocation;
+        }
+    }
+
+    /**
+     * An active invocation of a template, or function.
+     */
+    private static class Frame {
+        final Entry entry;
+        final long start;
+        long childNanos;
+
+        Frame(Entry pEntry, long pStart) {
+            entry = pEntry;
+            start = pStart;
+        }
+    }
+
+    /**
+     * Receives the trace events of a single transformer. A transformer is used by a single thread at a time, so
+     * the listener's state isn't synchronized.
+     */
+    private class Listener implements InvocationHandler {
+        private final Deque<Frame> frames = new ArrayDeque<Frame>();
+        // Recursive invocations contribute to the inclusive time of the outermost invocation only.
+        private final Map<Entry, int[]> depths = new HashMap<Entry, int[]>();
+
+        public Object invoke(Object pProxy, Method pMethod, Object[] pArgs) throws Throwable {
+            final String name = pMethod.getName();
+            if ("trace".equals(name)) {
+                final Entry entry = getTemplateEntry(pArgs[0]);
+                if (entry != null) {
+                    enter(entry);
+                }
+            } else if ("traceEnd".equals(name)) {
+                final Entry entry = getTemplateEntry(pArgs[0]);
+                if (entry != null) {
+                    leave(entry);
+                }
+            } else if ("extension".equals(name)) {
+                enter(getFunctionEntry(pArgs[0]));
+            } else if ("extensionEnd".equals(name)) {
+                leave(getFunctionEntry(pArgs[0]));
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(pProxy);
+            } else if ("equals".equals(name)) {
+                return pProxy == pArgs[0];
+            } else if ("toString".equals(name)) {
+                return "TemplateProfiler.Listener@" + Integer.toHexString(System.identityHashCode(pProxy));
+            }
+            return null;
+        }
+
+        private void enter(Entry pEntry) {
+            int[] depth = depths.get(pEntry);
+            if (depth == null) {
+                depth = new int[1];
+                depths.put(pEntry, depth);
+            }
+            depth[0]++;
+            frames.push(new Frame(pEntry, System.nanoTime()));
+        }
+
+        private void leave(Entry pEntry) {
+            // Ignore unbalanced events, for example after a failed transformation.
+            while (!frames.isEmpty()) {
+                final Frame frame = frames.pop();
+                final long elapsed = System.nanoTime() - frame.start;
+                final Entry entry = frame.entry;
+                entry.exclusiveNanos.add(elapsed - frame.childNanos);
+                if (--depths.get(entry)[0] == 0) {
+                    entry.inclusiveNanos.add(elapsed);
+                }
+                if (!frames.isEmpty()) {
+                    frames.peek().childNanos += elapsed;
+                }
+                if (entry == pEntry) {
+                    entry.calls.increment();
+                    break;
+                }
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+
+    private volatile Field styleNodeField;
+
+    private volatile Field methodField;
+
+    /**
+     * Attaches a trace listener to the given transformer.
+     *
+     * @return True, if the listener has been attached, or false, if the transformer doesn't support tracing.
+     */
+    boolean attach(Transformer pTransformer) {
+        try {
+            final ClassLoader cl = pTransformer.getClass().getClassLoader();
+            final Class<?> listenerClass = Class.forName(XALAN_LISTENER, false, cl);
+            final Object traceManager =
+                    pTransformer.getClass().getMethod("getTraceManager").invoke(pTransformer);
+            final Object listener = Proxy.newProxyInstance(cl, new Class<?>[] {listenerClass}, new Listener());
+            traceManager
+                    .getClass()
+                    .getMethod("addTraceListener", Class.forName(XALAN_BASE_LISTENER, false, cl))
+                    .invoke(traceManager, listener);
+            return true;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Entry getTemplateEntry(Object pEvent) throws ReflectiveOperationException {
+        Field field = styleNodeField;
+        if (field == null) {
+            field = pEvent.getClass().getField("m_styleNode");
+            styleNodeField = field;
+        }
+        final Object node = field.get(pEvent);
+        if (node == null || !XALAN_TEMPLATE.equals(node.getClass().getName())) {
+            return null;
+        }
+        Entry entry = entries.get(node);
+        if (entry == null) {
+            final Class<?> c = node.getClass();
+            final Object templateName = c.getMethod("getName").invoke(node);
+            final String name;
+            if (templateName == null) {
+                final Object match = c.getMethod("getMatch").invoke(node);
+                name = match == null
+                        ? "?"
+                        : String.valueOf(
+                                match.getClass().getMethod("getPatternString").invoke(match));
+            } else {
+                name = "name=" + templateName;
+            }
+            final Object mode = c.getMethod("getMode").invoke(node);
+            final Object systemId = c.getMethod("getSystemId").invoke(node);
+            final Object lineNumber = c.getMethod("getLineNumber").invoke(node);
+            final String location = systemId == null ? "#built-in" : systemId + ":" + lineNumber;
+            entry = putIfAbsent(node, new Entry(name, mode == null ? "#default" : String.valueOf(mode), location));
+        }
+        return entry;
+    }
+
+    private Entry getFunctionEntry(Object pEvent) throws ReflectiveOperationException {
+        Field field = methodField;
+        if (field == null) {
+            field = pEvent.getClass().getField("m_method");
+            methodField = field;
+        }
+        final Object method = field.get(pEvent);
+        Entry entry = entries.get(method);
+        if (entry == null) {
+            final String name;
+            final String location;
+            if (method instanceof Member) {
+                final Member member = (Member) method;
+                location = member.getDeclaringClass().getName();
+                name = member.getName();
+            } else if (method instanceof Class) {
+                location = ((Class<?>) method).getName();
+                name = "new";
+            } else {
+                location = "?";
+                name = String.valueOf(method);
+            }
+            entry = putIfAbsent(method, new Entry(name, FUNCTION_MODE, location));
+        }
+        return entry;
+    }
+
+    private Entry putIfAbsent(Object pKey, Entry pEntry) {
+        final Entry entry = entries.putIfAbsent(pKey, pEntry);
+        return entry == null ? pEntry : entry;
+    }
+
+    /**
+     * Returns the collected statistics, ordered by descending exclusive time.
+     */
+    List<Entry> getEntries() {
+        final List<Entry> result = new ArrayList<Entry>(entries.values());
+        Collections.sort(result, new Comparator<Entry>() {
+            public int compare(Entry pEntry1, Entry pEntry2) {
+                return Long.compare(pEntry2.exclusiveNanos.sum(), pEntry1.exclusiveNanos.sum());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Writes the collected statistics as a tab separated file, with a header line, ordered by descending
+     * exclusive time.
+     */
+    void write(File pFile) throws IOException {
+        final File dir = pFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory: " + dir.getPath());
+        }
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(pFile), StandardCharsets.UTF_8)) {
+            w.write("template\tmode\tlocation\tcalls\tinclusiveMillis\texclusiveMillis\n");
+            for (Entry entry : getEntries()) {
+                w.write(escape(entry.name)
+                        + '\t'
+                        + escape(entry.mode)
+                        + '\t'
+                        + escape(entry.location)
+                        + '\t'
+                        + entry.calls.sum()
+                        + '\t'
+                        + toMillis(entry.inclusiveNanos.sum())
+                        + '\t'
+                        + toMillis(entry.exclusiveNanos.sum())
+                        + '\n');
+            }
+        }
+    }
+
+    private static String escape(String pValue) {
+        return pValue.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String toMillis(long pNanos) {
+        return String.format(Locale.ROOT, "%.3f", pNanos / 1000000.0);
+    }
+}
@@ -0,0 +1,158 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Templates;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JVM wide cache of compiled stylesheets. The cache is shared by all executions of the transform goal, so that a
+ * stylesheet, which is used by multiple modules of a reactor, is compiled only once. Entries are keyed by the
+ * stylesheets URL, its content hash, the transformer factory, and the factories configuration. Modules, which have
+ * been imported, or included by the stylesheet, are validated by their content hash, whenever an entry is reused.
+ */
+final class TemplatesCache {
+    private static final TemplatesCache INSTANCE = new TemplatesCache();
+
+    private static class Entry {
+        final Templates templates;
+        final Map<String, String> modules;
+
+        Entry(Templates pTemplates, Map<String, String> pModules) {
+            templates = pTemplates;
+            modules = pModules;
+        }
+    }
+
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true);
+
+    private int maxSize;
+
+    private long hits, misses, evictions;
+
+    private TemplatesCache() {}
+
+    /**
+     * Returns the JVM wide instance.
+     */
+    static TemplatesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of entries. Excess entries are evicted, least recently used first.
+     */
+    synchronized void setMaxSize(int pMaxSize) {
+        maxSize = pMaxSize;
+        evict();
+    }
+
+    /**
+     * Raises the maximum number of entries to the given value, unless it is already larger. The cache is shared by
+     * all modules of a reactor, so a single module must not shrink it for the others.
+     */
+    synchronized void ensureMaxSize(int pMaxSize) {
+        if (pMaxSize > maxSize) {
+            maxSize = pMaxSize;
+        }
+    }
+
+    /**
+     * Returns the compiled stylesheet with the given key, if it is available, and the modules, which have been
+     * imported, or included by the stylesheet, are unchanged.
+     *
+     * @param pKey     The cache key.
+     * @param pModules If the compiled stylesheet is found, then the modules, on which it depends, are added to this
+     *                 map.
+     * @return The compiled stylesheet, or null.
+     */
+    Templates get(List<Object> pKey, Map<String, String> pModules) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(pKey);
+        }
+        if (entry != null && isUnchanged(entry.modules)) {
+            synchronized (this) {
+                hits++;
+            }
+            pModules.putAll(entry.modules);
+            return entry.templates;
+        }
+        synchronized (this) {
+            if (entry != null && entries.get(pKey) == entry) {
+                entries.remove(pKey);
+            }
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * Adds a compiled stylesheet to the cache.
+     *
+     * @param pKey       The cache key.
+     * @param pTemplates The compiled stylesheet.
+     * @param pModules   The modules, which have been imported, or included, by the stylesheet, mapped to their
+     *                   content hashes.
+     */
+    synchronized void put(List<Object> pKey, Templates pTemplates, Map<String, String> pModules) {
+        if (maxSize <= 0) {
+            return;
+        }
+        entries.put(pKey, new Entry(pTemplates, pModules));
+        evict();
+    }
+
+    private void evict() {
+        for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext() && entries.size() > maxSize; ) {
+            iter.next();
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns a textual representation of the caches statistics, suitable for logging.
+     */
+    synchronized String getStatistics() {
+        return "size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+
+    static boolean isUnchanged(Map<String, String> pModules) {
+        for (Map.Entry<String, String> module : pModules.entrySet()) {
+            final String hash;
+            try {
+                hash = ContentHash.of(new URL(module.getKey()));
+            } catch (MalformedURLException e) {
+                return false;
+            }
+            if (!module.getValue().equals(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,269 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Collects the wall time, and the number of bytes read, and written, per file, and reports the slowest files, and
+ * percentiles, per file set. Instances are thread safe.
+ */
+class TimingReport {
+    /**
+     * The measurement of a single file.
+     */
+    static class Sample {
+        final String file;
+        final long nanos;
+        final long bytesRead;
+        final long bytesWritten;
+
+        Sample(String pFile, long pNanos, long pBytesRead, long pBytesWritten) {
+            file = pFile;
+            nanos = pNanos;
+            bytesRead = pBytesRead;
+            bytesWritten = pBytesWritten;
+        }
+    }
+
+    /**
+     * The measurements of a single file set, for example a transformation set.
+     */
+    static class Group {
+        private final String name;
+        private final String dir;
+        private final List<Sample> samples = new ArrayList<Sample>();
+
+        Group(String pName, File pDir) {
+            name = pName;
+            dir = pDir == null ? null : pDir.getPath();
+        }
+
+        /**
+         * Records the measurement of a single file.
+         *
+         * @param pFile         The file.
+         * @param pStartNanos   The value of {@link System#nanoTime()}, when processing the file started.
+         * @param pBytesRead    The number of bytes, which have been read.
+         * @param pBytesWritten The number of bytes, which have been written.
+         */
+        synchronized void add(File pFile, long pStartNanos, long pBytesRead, long pBytesWritten) {
+            samples.add(new Sample(pFile.getPath(), System.nanoTime() - pStartNanos, pBytesRead, pBytesWritten));
+        }
+
+        /**
+         * Returns the measurements, ordered by descending wall time.
+         */
+        synchronized List<Sample> getSamples() {
+            final List<Sample> result = new ArrayList<Sample>(samples);
+            Collections.sort(result, new Comparator<Sample>() {
+                public int compare(Sample pSample1, Sample pSample2) {
+                    return Long.compare(pSample2.nanos, pSample1.nanos);
+                }
+            });
+            return result;
+        }
+    }
+
+    private static final int[] PERCENTILES = {50, 90, 99};
+
+    private final String goal;
+
+    private final List<Group> groups = new ArrayList<Group>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pGoal The goal, which is being reported, for example "transform".
+     */
+    TimingReport(String pGoal) {
+        goal = pGoal;
+    }
+
+    /**
+     * Returns the goal, which is being reported.
+     */
+    String getGoal() {
+        return goal;
+    }
+
+    /**
+     * Creates a new group, which collects the measurements of a file set.
+     *
+     * @param pName The file sets name.
+     * @param pDir  The file sets base directory, or null.
+     */
+    synchronized Group newGroup(String pName, File pDir) {
+        final Group group = new Group(pName, pDir);
+        groups.add(group);
+        return group;
+    }
+
+    private synchronized List<Group> getGroups() {
+        return new ArrayList<Group>(groups);
+    }
+
+    /**
+     * Returns the given percentile of the wall times of the given samples, which are ordered by descending wall
+     * time, using the nearest rank method.
+     */
+    static long getPercentile(List<Sample> pSamples, int pPercentile) {
+        if (pSamples.isEmpty()) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(pPercentile / 100.0 * pSamples.size());
+        return pSamples.get(pSamples.size() - Math.max(1, rank)).nanos;
+    }
+
+    /**
+     * Logs the percentiles, and the slowest files, of every group.
+     *
+     * @param pSize The maximum number of slowest files, which are reported per group.
+     */
+    void log(Log pLog, int pSize) {
+        for (Group group : getGroups()) {
+            final List<Sample> samples = group.getSamples();
+            long nanos = 0, bytesRead = 0, bytesWritten = 0;
+            for (Sample sample : samples) {
+                nanos += sample.nanos;
+                bytesRead += sample.bytesRead;
+                bytesWritten += sample.bytesWritten;
+            }
+            final StringBuilder sb = new StringBuilder();
+            sb.append("Timing of ").append(group.name).append(": ").append(samples.size());
+            sb.append(" file(s), total ").append(toMillis(nanos)).append(" ms, ");
+            sb.append(bytesRead).append(" bytes read, ").append(bytesWritten).append(" bytes written");
+            if (!samples.isEmpty()) {
+                for (int percentile : PERCENTILES) {
+                    sb.append(", p").append(percentile).append(' ');
+                    sb.append(toMillis(getPercentile(samples, percentile))).append(" ms");
+                }
+                sb.append(", max ").append(toMillis(samples.get(0).nanos)).append(" ms");
+            }
+            pLog.info(sb.toString());
+            for (Sample sample : samples.subList(0, Math.min(pSize, samples.size()))) {
+                pLog.info("  " + toMillis(sample.nanos) + " ms, " + sample.bytesRead + " bytes read, "
+                        + sample.bytesWritten + " bytes written: " + sample.file);
+            }
+        }
+    }
+
+    /**
+     * Writes the percentiles, and the slowest files, of every group as a JSON file.
+     *
+     * @param pSize The maximum number of slowest files, which are reported per group.
+     */
+    void write(File pFile, int pSize) throws IOException {
+        final File dir = pFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory: " + dir.getPath());
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"goal\": ").append(quote(goal)).append(",\n  \"sets\": [");
+        String sep = "\n";
+        for (Group group : getGroups()) {
+            final List<Sample> samples = group.getSamples();
+            long nanos = 0, bytesRead = 0, bytesWritten = 0;
+            for (Sample sample : samples) {
+                nanos += sample.nanos;
+                bytesRead += sample.bytesRead;
+                bytesWritten += sample.bytesWritten;
+            }
+            sb.append(sep).append("    {\n");
+            sb.append("      \"name\": ").append(quote(group.name)).append(",\n");
+            sb.append("      \"dir\": ").append(quote(group.dir)).append(",\n");
+            sb.append("      \"files\": ").append(samples.size()).append(",\n");
+            sb.append("      \"totalMillis\": ").append(toMillis(nanos)).append(",\n");
+            sb.append("      \"bytesRead\": ").append(bytesRead).append(",\n");
+            sb.append("      \"bytesWritten\": ").append(bytesWritten).append(",\n");
+            for (int percentile : PERCENTILES) {
+                sb.append("      \"p").append(percentile).append("Millis\": ");
+                sb.append(toMillis(getPercentile(samples, percentile))).append(",\n");
+            }
+            sb.append("      \"maxMillis\": ").append(toMillis(samples.isEmpty() ? 0 : samples.get(0).nanos));
+            sb.append(",\n      \"slowest\": [");
+            String fileSep = "\n";
+            for (Sample sample : samples.subList(0, Math.min(pSize, samples.size()))) {
+                sb.append(fileSep).append("        {\"file\": ").append(quote(sample.file));
+                sb.append(", \"millis\": ").append(toMillis(sample.nanos));
+                sb.append(", \"bytesRead\": ").append(sample.bytesRead);
+                sb.append(", \"bytesWritten\": ").append(sample.bytesWritten).append('}');
+                fileSep = ",\n";
+            }
+            sb.append(samples.isEmpty() ? "]\n" : "\n      ]\n").append("    }");
+            sep = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(pFile), StandardCharsets.UTF_8)) {
+            w.write(sb.toString());
+        }
+    }
+
+    private static String quote(String pValue) {
+        if (pValue == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(pValue.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < pValue.length(); i++) {
+            final char c = pValue.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String toMillis(long pNanos) {
+        return String.format(Locale.ROOT, "%.3f", pNanos / 1000000.0);
+    }
+}
@@ -19,28 +19,50 @@ package org.codehaus.mojo.xml;
  * under the License.
  */
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -50,17 +72,94 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.mojo.xml.transformer.NameValuePair;
+import org.codehaus.mojo.xml.transformer.ParameterSet;
+import org.codehaus.mojo.xml.transformer.Projection;
+import org.codehaus.mojo.xml.transformer.RewriteRule;
 import org.codehaus.mojo.xml.transformer.TransformationSet;
+import org.codehaus.mojo.xml.transformer.TransformationTarget;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
-import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * The TransformMojo is used for transforming a set of files using a common stylesheet.
  */
 @Mojo(defaultPhase = LifecyclePhase.GENERATE_RESOURCES, name = "transform", threadSafe = true)
 public class TransformMojo extends AbstractXmlMojo {
+    /**
+     * The stylesheets, and the output location of a transformation set. In fan-out mode, a set has multiple targets,
+     * which are applied to the same input files. Otherwise, there is a single target.
+     */
+    private static class Target {
+        final String[] stylesheetNames;
+        final List<URL> stylesheetUrls = new ArrayList<URL>();
+        final List<Templates> templates = new ArrayList<Templates>();
+        final File outputDir;
+        final FileMapper[] fileMappers;
+        final NameValuePair[] parameters;
+        final NameValuePair[] outputProperties;
+        final boolean transientOutput;
+        /**
+         * The compiled rewrite rules, which are applied to the input file, or an empty list.
+         */
+        final List<RewriteFilter.Rule> rules;
+        /**
+         * The compiled projection, which is applied to the input file, or null.
+         */
+        final ProjectionFilter.Paths projection;
+        /**
+         * The transformers of the pipeline stages, by worker. A workers resolver is owned by the worker, while it
+         * transforms a file, so it serves as the workers identity.
+         */
+        final Map<Resolver, Transformer[]> transformers = new ConcurrentHashMap<Resolver, Transformer[]>();
+        /**
+         * The profiler, which is shared by all targets of the transformation set, or null.
+         */
+        TemplateProfiler profiler;
+        /**
+         * The input directories of the subsequent transformation sets, which consume the transient outputs.
+         */
+        Collection<File> consumerDirs = Collections.emptyList();
+
+        Target(
+                String[] pStylesheetNames,
+                File pOutputDir,
+                FileMapper[] pFileMappers,
+                NameValuePair[] pParameters,
+                NameValuePair[] pOutputProperties,
+                boolean pTransientOutput,
+                List<RewriteFilter.Rule> pRules,
+                ProjectionFilter.Paths pProjection) {
+            stylesheetNames = pStylesheetNames;
+            outputDir = pOutputDir;
+            fileMappers = pFileMappers;
+            parameters = pParameters;
+            outputProperties = pOutputProperties;
+            transientOutput = pTransientOutput;
+            rules = pRules;
+            projection = pProjection;
+        }
+    }
+
+    /**
+     * A single input file, and the output files, which are being created by transforming it.
+     */
+    private static class FileTransformation {
+        final File input;
+        /**
+         * The output files, indexed by target. An element is null, if the targets output is up-to-date.
+         */
+        final File[] outputs;
+
+        FileTransformation(File pInput, File[] pOutputs) {
+            input = pInput;
+            outputs = pOutputs;
+        }
+    }
+
     /**
      * Specifies one or more sets of files, which are being transformed.   See
      * <a href="transformation.html">Transforming XML Files</a>
@@ -87,6 +186,208 @@ public class TransformMojo extends AbstractXmlMojo {
     @Parameter(property = "xml.transformerFactory")
     private String transformerFactory;
 
+    /**
+     * The number of threads, which are used for transforming the files of a single transformation set. The default
+     * value of 1 transforms the files one after another. May be overridden per transformation set.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.threads", defaultValue = "1")
+    private int threads;
+
+    /**
+     * The number of transformation sets, which are transformed concurrently. The default value of 1 transforms the
+     * sets one after another. Independent sets are transformed concurrently, whereas a set waits for the sets, on
+     * which it depends. A set depends on the sets, which are referenced by its "dependsOn" element, and on the
+     * preceding sets, which write into its input directory, or read from its output directory. All threads are
+     * taken from a single pool, which is shared by the sets, their files, and targets. The pools size is the
+     * largest of this value, the {@link #targetThreads}, and the "threads" of the goal, and of its transformation
+     * sets.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.transformationSetThreads", defaultValue = "1")
+    private int transformationSetThreads;
+
+    /**
+     * The number of threads, which are used for applying the targets, and parameter sets, of a single input file
+     * concurrently. The file is parsed once, and the threads share its tree. The default value of 0 uses the threads
+     * of the pool (see {@link #transformationSetThreads}), which aren't needed for the files of the set. For example,
+     * a single master document, which is rendered for many parameter sets, is transformed by the whole pool. Set this
+     * to apply the parameter sets concurrently, even if "threads" is 1, or to limit the number of transformers,
+     * which are used concurrently for a single file.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.targetThreads", defaultValue = "0")
+    private int targetThreads;
+
+    /**
+     * The maximum number of compiled stylesheets, which are kept in memory. The cache is shared by all executions of
+     * the transform goal within the same JVM, so that a stylesheet, which is used by multiple modules, is compiled
+     * only once per build. As the cache is shared, its size is the largest value, which has been configured by any
+     * execution. A value of 0 disables the cache for this execution.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.templatesCacheSize", defaultValue = "16")
+    private int templatesCacheSize;
+
+    /**
+     * A directory, where compiled stylesheets are stored, so that they can be reused by subsequent builds. By default,
+     * no such directory is used. Only works with XSLT processors, which support serialization of compiled stylesheets,
+     * like the JDK's builtin XSLTC processor, or Xalan. A compiled stylesheet contains executable code, so every entry
+     * is signed with a HMAC, using a secret key of the current user, which is stored in the
+     * {@link #templatesCacheKeyFile}. Entries, which have been modified, or written by another user, are ignored, and replaced. The directory may be
+     * shared by the projects of a single user, like "${project.build.directory}/../../target/templates" in a
+     * multi-module build.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.templatesCacheDirectory")
+    private File templatesCacheDirectory;
+
+    /**
+     * The file with the secret key, which is used to sign the entries of the {@link #templatesCacheDirectory}. The
+     * file, and its directory, are created on first use, and made readable by the owner only. If the file cannot be
+     * created, for example, because the directory is read only, then the persistent cache is disabled, which is
+     * logged once. Defaults to "${settings.localRepository}/../xml-maven-plugin/templates-cache.key", which is
+     * typically "~/.m2/xml-maven-plugin/templates-cache.key".
+     *
+     * @since 1.3.0
+     */
+    @Parameter(
+            property = "xml.templatesCacheKeyFile",
+            defaultValue = "${settings.localRepository}/../xml-maven-plugin/templates-cache.key")
+    private File templatesCacheKeyFile;
+
+    /**
+     * Whether to use a dependency manifest for the up-to-date check. If enabled, then the plugin records for every
+     * output file the resources, which have actually been read while creating it (the input file, the stylesheet,
+     * and its modules, documents loaded by the document() function, external entities, catalogs, and
+     * "otherDepends"), together with their content hashes. The manifest is stored in
+     * "${project.build.directory}/xml-maven-plugin". Subsequent builds transform only those files, for which any of
+     * these resources has changed, or for which the transformation sets configuration has changed.
+     * Otherwise, the up-to-date check compares timestamps of the input file, the stylesheet, the catalogs, the
+     * "otherDepends", and the projects POM. Transformation sets with an aggregate output don't support the
+     * manifest, so the build fails, if such a set is configured.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.dependencyManifest", defaultValue = "false")
+    private boolean dependencyManifest;
+
+    /**
+     * The connect timeout in milliseconds, which is used when querying the last modification time of URL's for
+     * the up-to-date check, for example of "otherDepends" entries. 0 means no timeout.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.urlConnectTimeout", defaultValue = "10000")
+    private int urlConnectTimeout;
+
+    /**
+     * The read timeout in milliseconds, which is used when querying the last modification time of URL's for the
+     * up-to-date check, for example of "otherDepends" entries. 0 means no timeout.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.urlReadTimeout", defaultValue = "10000")
+    private int urlReadTimeout;
+
+    /**
+     * Last modification times of URL's, which have been queried by the current execution.
+     */
+    private UrlLastModifiedCache urlLastModifiedCache;
+
+    /**
+     * The maximum total size, in kilobytes, of the parsed documents, which are kept in memory by every thread,
+     * because they are loaded by a stylesheet, for example through the document() function. If a stylesheet loads
+     * the same documents for every input file, then these documents are parsed only once per thread. Cached
+     * documents are validated by their last modification time. The size of a parsed document is estimated by the
+     * number of its nodes, and the length of their names, and values, so it is typically several times the size of
+     * the file. The default value of 0 disables the cache.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.documentCacheSize", defaultValue = "0")
+    private int documentCacheSize;
+
+    /**
+     * Whether to keep existing output files, if their content is unchanged. If enabled, then the new output is
+     * compared with the existing file, and the existing file, including its timestamp, is kept, if both are equal.
+     * This prevents unnecessary work in subsequent build steps, which are triggered by modified timestamps. As the
+     * timestamp of an unchanged output isn't updated, the timestamp based up-to-date check will transform the
+     * file again in the next build. Use "dependencyManifest" to avoid that.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.writeIfChanged", defaultValue = "false")
+    private boolean writeIfChanged;
+
+    /**
+     * The maximum total size, in kilobytes, of the result trees of transformation sets with transient output, which
+     * are kept in memory. The size of a tree is estimated by the number of its nodes, and the length of its text.
+     * Outputs, which would exceed the maximum size, are written to disk, as usual. A tree is released, as soon as it
+     * has been read by the last subsequent set, which reads from a directory containing it.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.transientOutputSize", defaultValue = "102400")
+    private int transientOutputSize;
+
+    /**
+     * If true, the transient outputs of transformation sets are written to disk, in addition to being passed to
+     * subsequent transformation sets in memory. Intended for debugging.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.materializeTransientOutputs", defaultValue = "false")
+    private boolean materializeTransientOutputs;
+
+    /**
+     * If true, then the invocation counts, and the inclusive, and exclusive times of the templates, and extension
+     * functions, are collected across all files of a transformation set. The results are written to a tab separated
+     * file "target/xml-maven-plugin/profile-*.tsv" per set, ordered by descending exclusive time. Profiling requires
+     * the transformer to support trace listeners, which is currently the case for Xalan only, and slows down the
+     * transformation considerably. In particular, the JDK's builtin XSLTC processor, which is used by default, unless
+     * Xalan is on the plugins classpath, doesn't support profiling. The build fails, if profiling is enabled, and the
+     * transformer doesn't support it.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.profile", defaultValue = "false")
+    private boolean profile;
+
+    /**
+     * The resolvers of the current execution, which aren't currently used by a transformation set. Resolvers are
+     * reused by subsequent transformation sets, so that their document caches survive.
+     */
+    private List<Resolver> idleResolvers;
+
+    /**
+     * The document caches of the current execution's resolvers.
+     */
+    private Map<Resolver, DocumentCache> documentCaches;
+
+    /**
+     * The transient outputs of the current execution.
+     */
+    private TransientOutputs transientOutputs;
+
+    /**
+     * The thread pool, which is shared by the transformation sets, their files, and targets.
+     */
+    private TaskRunner taskRunner;
+
+    /**
+     * The catalogs, which have been determined once per execution, because {@link #setCatalogs(List, List)} isn't
+     * safe for use by concurrent transformation sets.
+     */
+    private List<File> catalogFiles;
+
+    private List<URL> catalogUrls;
+
     private void setFeature(TransformerFactory pTransformerFactory, String name, Boolean value)
             throws MojoExecutionException {
         // Try to use the method setFeature, which isn't available until JAXP 1.3
@@ -111,13 +412,23 @@ public class TransformMojo extends AbstractXmlMojo {
         }
     }
 
-    private Templates getTemplate(Resolver pResolver, Source stylesheet, TransformationSet transformationSet)
+    /**
+     * Returns the compiled stylesheet.
+     *
+     * @param pResolver         The resolver to use for loading imported, or included modules.
+     * @param pStylesheetUrl    The stylesheets URL.
+     * @param transformationSet The transformation set, which configures the transformer factory.
+     * @param pModules          The modules, which have been imported or included by the stylesheet, are added to
+     *                          this map, together with their content hashes, if they are known.
+     */
+    private Templates getTemplate(
+            Resolver pResolver, URL pStylesheetUrl, TransformationSet transformationSet, Map<String, String> pModules)
             throws MojoExecutionException, MojoFailureException {
 
         TransformerFactory tf = getTransformerFactory();
-        if (pResolver != null) {
-            tf.setURIResolver(pResolver);
-        }
+        final List<Object> cacheKey = new ArrayList<Object>();
+        cacheKey.add(tf.getClass());
+        cacheKey.add(pStylesheetUrl.toExternalForm());
         NameValuePair[] features = transformationSet.getFeatures();
         if (features != null) {
             for (int i = 0; i < features.length; i++) {
@@ -131,6 +442,7 @@ public class TransformMojo extends AbstractXmlMojo {
                     throw new MojoFailureException("No value specified for feature " + name);
                 }
                 setFeature(tf, name, Boolean.valueOf(value));
+                cacheKey.add("feature:" + name + "=" + Boolean.valueOf(value));
             }
         }
         NameValuePair[] attributes = transformationSet.getAttributes();
@@ -146,13 +458,137 @@ public class TransformMojo extends AbstractXmlMojo {
                     throw new MojoFailureException("No value specified for attribute " + name);
                 }
                 tf.setAttribute(name, value);
+                cacheKey.add("attribute:" + name + "=" + value);
+            }
+        }
+
+        final byte[] stylesheet;
+        try {
+            stylesheet = ContentHash.read(pStylesheetUrl);
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        cacheKey.add(ContentHash.of(stylesheet));
+        // Catalogs, and the resolvers configuration, affect the resolution of imported modules.
+        cacheKey.add(getCatalogConfiguration());
+        if (pResolver != null) {
+            cacheKey.add("resolver:" + pResolver.isValidating() + "," + pResolver.isXincludeAware());
+        }
+
+        final TemplatesCache cache = templatesCacheSize > 0 ? TemplatesCache.getInstance() : null;
+        if (cache != null) {
+            cache.ensureMaxSize(templatesCacheSize);
+            final Templates templates = cache.get(cacheKey, pModules);
+            getLog().debug("Templates cache " + (templates == null ? "miss" : "hit") + " for stylesheet "
+                    + pStylesheetUrl + ": " + cache.getStatistics());
+            if (templates != null) {
+                return templates;
+            }
+        }
+
+        final PersistentTemplatesCache persistentCache = templatesCacheDirectory == null
+                ? null
+                : new PersistentTemplatesCache(
+                        asAbsoluteFile(templatesCacheDirectory), getTemplatesCacheKeyFile(), getLog());
+        final String persistentKey = persistentCache == null ? null : getPersistentCacheKey(cacheKey);
+        if (persistentCache != null) {
+            final Map<String, String> modules = new LinkedHashMap<String, String>();
+            final Templates templates = persistentCache.load(persistentKey, tf.getClass(), modules);
+            if (templates != null) {
+                pModules.putAll(modules);
+                getLog().debug("Loaded compiled stylesheet " + pStylesheetUrl + " from " + templatesCacheDirectory);
+                if (cache != null) {
+                    cache.put(cacheKey, templates, modules);
+                }
+                return templates;
             }
         }
+
+        final RecordingURIResolver recordingResolver = new RecordingURIResolver(pResolver);
+        tf.setURIResolver(recordingResolver);
+        final InputSource isource = new InputSource(new ByteArrayInputStream(stylesheet));
+        isource.setSystemId(pStylesheetUrl.toExternalForm());
+        final Source source = new SAXSource(isource);
+        final Templates templates;
         try {
-            return tf.newTemplates(stylesheet);
+            templates = tf.newTemplates(source);
         } catch (TransformerConfigurationException e) {
-            throw new MojoExecutionException("Failed to parse stylesheet " + stylesheet + ": " + e.getMessage(), e);
+            throw new MojoExecutionException("Failed to parse stylesheet " + source + ": " + e.getMessage(), e);
+        }
+        final Map<String, String> modules = getModules(pStylesheetUrl, recordingResolver);
+        if (modules == null) {
+            for (String systemId : recordingResolver.getSystemIds()) {
+                pModules.put(systemId, null);
+            }
+        } else {
+            pModules.putAll(modules);
+            if (cache != null || persistentCache != null) {
+                if (cache != null) {
+                    cache.put(cacheKey, templates, modules);
+                }
+                if (persistentCache != null) {
+                    persistentCache.store(persistentKey, templates, modules);
+                }
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Returns the modules, which have been imported, or included, while compiling a stylesheet, mapped to their
+     * content hashes.
+     *
+     * @return The modules, or null, if a module cannot be tracked, and the stylesheet must not be cached.
+     */
+    private Map<String, String> getModules(URL pStylesheetUrl, RecordingURIResolver pRecordingResolver) {
+        final Map<String, String> modules = new LinkedHashMap<String, String>();
+        for (String systemId : pRecordingResolver.getSystemIds()) {
+            final String hash;
+            try {
+                hash = ContentHash.of(new URL(systemId));
+            } catch (MalformedURLException e) {
+                getLog().debug("Not caching stylesheet " + pStylesheetUrl + ", unable to track module " + systemId);
+                return null;
+            }
+            if (hash == null) {
+                getLog().debug("Not caching stylesheet " + pStylesheetUrl + ", unable to read module " + systemId);
+                return null;
+            }
+            modules.put(systemId, hash);
+        }
+        return modules;
+    }
+
+    /**
+     * Returns the file with the secret key of the persistent templates cache. If the default value cannot be
+     * resolved (for example, because no settings are available), then "~/.m2/xml-maven-plugin/templates-cache.key"
+     * is used.
+     */
+    private File getTemplatesCacheKeyFile() {
+        if (templatesCacheKeyFile == null || templatesCacheKeyFile.getPath().contains("${")) {
+            return new File(System.getProperty("user.home"), ".m2/xml-maven-plugin/templates-cache.key");
+        }
+        return asAbsoluteFile(templatesCacheKeyFile);
+    }
+
+    /**
+     * Converts the in-memory cache key into a key for the persistent cache, which also includes the processors
+     * version, and the JVM version, because these affect the serialized form.
+     */
+    private String getPersistentCacheKey(List<Object> pCacheKey) {
+        final StringBuilder sb = new StringBuilder();
+        for (Object o : pCacheKey) {
+            if (o instanceof Class) {
+                final Class<?> c = (Class<?>) o;
+                final Package p = c.getPackage();
+                sb.append(c.getName()).append(':').append(p == null ? null : p.getImplementationVersion());
+            } else {
+                sb.append(o);
+            }
+            sb.append('\n');
         }
+        sb.append(System.getProperty("java.vm.name")).append(':').append(System.getProperty("java.version"));
+        return ContentHash.of(sb.toString());
     }
 
     /**
@@ -203,7 +639,7 @@ public class TransformMojo extends AbstractXmlMojo {
         return asAbsoluteFile(pDir);
     }
 
-    private void addToClasspath(File pOutputDir) {
+    private synchronized void addToClasspath(File pOutputDir) {
         MavenProject project = getProject();
         for (Iterator<Resource> iter = project.getResources().iterator(); iter.hasNext(); ) {
             Resource resource = iter.next();
@@ -262,10 +698,7 @@ public class TransformMojo extends AbstractXmlMojo {
                     try {
                         URL url = new URL(sdep);
 
-                        URLConnection uCon = url.openConnection();
-                        uCon.setUseCaches(false);
-
-                        fileModifTime = uCon.getLastModified();
+                        fileModifTime = getUrlLastModifiedCache().getLastModified(url);
 
                     } catch (MalformedURLException e) {
                         fileModifTime = new File(sdep).lastModified();
@@ -297,6 +730,22 @@ public class TransformMojo extends AbstractXmlMojo {
         return timeStamp;
     }
 
+    private static boolean isUrl(String pValue) {
+        try {
+            new URL(pValue);
+            return true;
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    private synchronized UrlLastModifiedCache getUrlLastModifiedCache() {
+        if (urlLastModifiedCache == null) {
+            urlLastModifiedCache = new UrlLastModifiedCache(urlConnectTimeout, urlReadTimeout);
+        }
+        return urlLastModifiedCache;
+    }
+
     /**
      * @return true to indicate results are up-to-date, that is, when the latest from input files is earlier than the
      *         younger from the output files (meaning no re-execution required).
@@ -313,35 +762,47 @@ public class TransformMojo extends AbstractXmlMojo {
         return inputTimeStamp < destTimeStamp;
     }
 
-    private void transform(Transformer pTransformer, File input, File output, Resolver pResolver)
+    /**
+     * Transforms a single input file into an output file.
+     *
+     * @return False, if the output file is unchanged, and has been kept, because {@link #writeIfChanged} is set.
+     *     Otherwise true.
+     */
+    private boolean transform(Transformer[] pStages, Source pTree, File input, File output, Resolver pResolver)
             throws MojoExecutionException {
-        File dir = output.getParentFile();
-        dir.mkdirs();
-        getLog().info("Transforming file: " + input.getPath());
-        FileOutputStream fos = null;
+        OutputStream fos = null;
+        File tmpOutput = null;
         try {
-            final boolean transformInPlace = output.equals(input);
-            File tmpOutput = null;
-            if (transformInPlace) {
-                tmpOutput = File.createTempFile("xml-maven-plugin", "xml");
-                tmpOutput.deleteOnExit();
-                fos = new FileOutputStream(tmpOutput);
-            } else {
-                fos = new FileOutputStream(output);
+            // The output is written to a temporary file in the same directory, and then renamed. This works for
+            // in-place transformations as well, and readers never observe a partially written output file.
+            tmpOutput = AtomicFiles.newTempFile(output);
+            final MessageDigest digest = writeIfChanged ? ContentHash.newDigest() : null;
+            fos = new FileOutputStream(tmpOutput);
+            if (digest != null) {
+                fos = new DigestOutputStream(fos, digest);
             }
 
             final String parentFile = input.getParent() == null
                     ? null
                     : input.getParentFile().toURI().toURL().toExternalForm();
-            pTransformer.transform(
-                    pResolver.resolve(input.toURI().toURL().toExternalForm(), parentFile), new StreamResult(fos));
+            final String systemId = input.toURI().toURL().toExternalForm();
+            // The system ID is the base URI of secondary outputs, like those created by xsl:result-document.
+            final StreamResult streamResult = new StreamResult(fos);
+            streamResult.setSystemId(output.toURI().toURL().toExternalForm());
+            final Source source = pTree == null ? pResolver.resolve(systemId, parentFile) : pTree;
+            pStages[pStages.length - 1].transform(PipelineReader.newSource(pStages, source, systemId), streamResult);
             fos.close();
             fos = null;
-            if (transformInPlace) {
-                FileUtils.copyFile(tmpOutput, output);
-                /* tmpOutput is a temporary file */
-                tmpOutput.delete();
+            if (digest != null
+                    && output.isFile()
+                    && output.length() == tmpOutput.length()
+                    && ContentHash.toHex(digest.digest()).equals(ContentHash.of(output))) {
+                getLog().debug("Output file " + output.getPath() + " is unchanged.");
+                return false;
             }
+            AtomicFiles.publish(tmpOutput, output);
+            tmpOutput = null;
+            return true;
         } catch (IOException e) {
             throw new MojoExecutionException(
                     "Failed to create output file " + output.getPath() + ": " + e.getMessage(), e);
@@ -356,7 +817,62 @@ public class TransformMojo extends AbstractXmlMojo {
                     /* Ignore me */
                 }
             }
+            if (tmpOutput != null) {
+                tmpOutput.delete();
+            }
+        }
+    }
+
+    /**
+     * Transforms a single input file into a tree, which is passed to subsequent transformation sets in memory. The
+     * tree is written to disk, if no subsequent set reads it, if the maximum size of the transient outputs would be
+     * exceeded, or if transient outputs are being materialized.
+     *
+     * @return False, if the output file is unchanged, and has been kept, because {@link #writeIfChanged} is set.
+     *     Otherwise true.
+     */
+    private boolean transformToTree(
+            TransformerFactory pFactory,
+            Transformer[] pStages,
+            Source pTree,
+            File input,
+            File output,
+            Resolver pResolver,
+            Collection<File> pConsumerDirs)
+            throws MojoExecutionException {
+        final Transformer lastStage = pStages[pStages.length - 1];
+        final SaxBuffer tree = new SaxBuffer();
+        final String outputSystemId;
+        try {
+            final String parentFile = input.getParent() == null
+                    ? null
+                    : input.getParentFile().toURI().toURL().toExternalForm();
+            final String systemId = input.toURI().toURL().toExternalForm();
+            outputSystemId = output.toURI().toURL().toExternalForm();
+            final SAXResult result = new SAXResult(tree);
+            result.setLexicalHandler(tree);
+            final Source source = pTree == null ? pResolver.resolve(systemId, parentFile) : pTree;
+            lastStage.transform(PipelineReader.newSource(pStages, source, systemId), result);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read input file " + input.getPath() + ": " + e.getMessage(), e);
+        } catch (TransformerException e) {
+            throw new MojoExecutionException(
+                    "Failed to transform input file " + input.getPath() + ": " + e.getMessage(), e);
+        }
+        if (transientOutputs.put(output, tree, pConsumerDirs) && !materializeTransientOutputs) {
+            return true;
+        }
+        // Serialize the tree, as the last stage would have done.
+        final Transformer identity;
+        try {
+            synchronized (pFactory) {
+                identity = pFactory.newTransformer();
+            }
+        } catch (TransformerConfigurationException e) {
+            throw new MojoExecutionException("Failed to create Transformer: " + e.getMessage(), e);
         }
+        identity.setOutputProperties(lastStage.getOutputProperties());
+        return transform(new Transformer[] {identity}, tree.newSource(outputSystemId), input, output, pResolver);
     }
 
     private File getOutputFile(File targetDir, String pName, FileMapper[] pFileMappers) {
@@ -369,159 +885,1353 @@ public class TransformMojo extends AbstractXmlMojo {
         return getFile(targetDir, name);
     }
 
-    private void transform(Resolver pResolver, TransformationSet pTransformationSet)
-            throws MojoExecutionException, MojoFailureException {
-        String[] fileNames = getFileNames(
-                pTransformationSet.getDir(),
-                pTransformationSet.getIncludes(),
-                getExcludes(pTransformationSet.getExcludes(), pTransformationSet.isSkipDefaultExcludes()));
-        if (fileNames == null || fileNames.length == 0) {
-            getLog().warn("No files found for transformation by stylesheet " + pTransformationSet.getStylesheet());
-            return;
+    /**
+     * Performs the timestamp based up-to-date check for all files of a transformation set. The dependencies, which
+     * are shared by all files (the projects POM, the stylesheets, the catalogs, and the "otherDepends"), are checked
+     * only once. Likewise, every input, and output file is checked only once.
+     *
+     * @param pUpToDate Receives, for every file, whether it is up-to-date.
+     * @return True, if all files are up-to-date.
+     */
+    private boolean isUpToDate(
+            TransformationSet pTransformationSet,
+            List<URL> pStylesheetUrls,
+            List<File> pInputs,
+            List<File> pOutputs,
+            boolean[] pUpToDate)
+            throws MojoExecutionException {
+        final List<Object> dependsFiles = new ArrayList<Object>();
+        // Depends from pom.xml file for when project configuration changes.
+        dependsFiles.add(getProject().getFile());
+        for (URL stylesheetUrl : pStylesheetUrls) {
+            if ("file".equals(stylesheetUrl.getProtocol())) {
+                dependsFiles.add(new File(stylesheetUrl.getFile()));
+            }
         }
-
-        String stylesheetName = pTransformationSet.getStylesheet();
-        if (stylesheetName == null) {
-            getLog().warn("No stylesheet configured.");
-            return;
+        dependsFiles.addAll(catalogFiles);
+        final String[] otherDepends = pTransformationSet.getOtherDepends();
+        if (otherDepends != null) {
+            for (String otherDepend : otherDepends) {
+                if (isUrl(otherDepend)) {
+                    dependsFiles.add(otherDepend);
+                } else {
+                    dependsFiles.add(new File(asAbsoluteFile(getBasedir()), otherDepend));
+                }
+            }
         }
+        final long dependsTimeStamp = findLastModified(dependsFiles, true);
+        getLog().debug("Shared depends timeStamp: " + dependsTimeStamp);
 
-        final URL stylesheetUrl = getResource(stylesheetName);
-        Templates template;
-        InputStream stream = null;
-        try {
-            stream = stylesheetUrl.openStream();
-            InputSource isource = new InputSource(stream);
-            isource.setSystemId(stylesheetUrl.toExternalForm());
-            template = getTemplate(pResolver, new SAXSource(isource), pTransformationSet);
-            stream.close();
-            stream = null;
-        } catch (IOException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
-        } finally {
-            IOUtil.close(stream);
+        // A single sweep over the input, and output files. If the oldest output is younger than the youngest
+        // dependency, then the whole set is up-to-date.
+        final long[] inputTimeStamps = new long[pInputs.size()];
+        final long[] outputTimeStamps = new long[pOutputs.size()];
+        long youngestInput = Long.MIN_VALUE;
+        long oldestOutput = Long.MAX_VALUE;
+        for (int i = 0; i < inputTimeStamps.length; i++) {
+            inputTimeStamps[i] = pInputs.get(i).lastModified();
+            outputTimeStamps[i] = pOutputs.get(i).lastModified();
+            youngestInput = Math.max(youngestInput, inputTimeStamps[i]);
+            oldestOutput = Math.min(oldestOutput, outputTimeStamps[i]);
         }
+        if (Math.max(dependsTimeStamp, youngestInput) < oldestOutput) {
+            Arrays.fill(pUpToDate, true);
+            return true;
+        }
+        for (int i = 0; i < inputTimeStamps.length; i++) {
+            pUpToDate[i] = Math.max(dependsTimeStamp, inputTimeStamps[i]) < outputTimeStamps[i];
+        }
+        return false;
+    }
 
-        int filesTransformed = 0;
-        File inputDir = getDir(pTransformationSet.getDir());
-        File outputDir = getOutputDir(pTransformationSet.getOutputDir());
-        for (int i = 0; i < fileNames.length; i++) {
-            final Transformer t;
-
-            File input = getFile(inputDir, fileNames[i]);
-            File output = getOutputFile(outputDir, fileNames[i], pTransformationSet.getFileMappers());
-
-            // Perform up-to-date-check.
-            boolean needsTransform = forceCreation;
-            if (!needsTransform) {
-                List<File> dependsFiles = new ArrayList<File>();
-                List<File> producesFiles = new ArrayList<File>();
+    /**
+     * Returns the names of the stylesheets, which are configured by the "stylesheet", and "stylesheets" elements of
+     * a transformation set, or target.
+     *
+     * @return The stylesheet names, or null, if no stylesheet is configured.
+     */
+    private String[] getStylesheetNames(String pStylesheet, String[] pStylesheets) throws MojoFailureException {
+        if (pStylesheets == null || pStylesheets.length == 0) {
+            return pStylesheet == null ? null : new String[] {pStylesheet};
+        }
+        if (pStylesheet != null) {
+            throw new MojoFailureException("The stylesheet, and the stylesheets elements are mutually exclusive.");
+        }
+        for (String stylesheet : pStylesheets) {
+            if (stylesheet == null || stylesheet.length() == 0) {
+                throw new MojoFailureException("A stylesheets element contains an empty entry.");
+            }
+        }
+        return pStylesheets;
+    }
 
-                // Depends from pom.xml file for when project configuration changes.
-                dependsFiles.add(getProject().getFile());
-                if ("file".equals(stylesheetUrl.getProtocol())) {
-                    dependsFiles.add(new File(stylesheetUrl.getFile()));
-                }
-                List<File> catalogFiles = new ArrayList<File>();
-                List<URL> catalogUrls = new ArrayList<URL>();
-                setCatalogs(catalogFiles, catalogUrls);
-                dependsFiles.addAll(catalogFiles);
-                dependsFiles.add(input);
-                File[] files = asFiles(getBasedir(), pTransformationSet.getOtherDepends());
-                for (int j = 0; j < files.length; j++) {
-                    dependsFiles.add(files[j]);
+    /**
+     * Returns the targets of a transformation set, with their stylesheets compiled.
+     *
+     * @param pModules The modules, which have been imported or included by the stylesheets, are added to this map.
+     * @return The targets, or null, if no stylesheet is configured.
+     */
+    private List<Target> getTargets(
+            Resolver pResolver, TransformationSet pTransformationSet, Map<String, String> pModules)
+            throws MojoExecutionException, MojoFailureException {
+        final List<Target> result = new ArrayList<Target>();
+        final List<RewriteFilter.Rule> rules = getRules(pTransformationSet);
+        final ProjectionFilter.Paths projection = getProjection(pTransformationSet);
+        String[] stylesheetNames =
+                getStylesheetNames(pTransformationSet.getStylesheet(), pTransformationSet.getStylesheets());
+        final TransformationTarget[] targets = pTransformationSet.getTargets();
+        if (targets == null || targets.length == 0) {
+            if (stylesheetNames == null) {
+                if (rules.isEmpty() && projection == null) {
+                    return null;
                 }
-
-                producesFiles.add(output);
-
-                needsTransform = !isUpdToDate(dependsFiles, producesFiles);
+                // The rewrite rules, or the projection, are applied by an identity transformation.
+                stylesheetNames = new String[0];
             }
-
-            if (!needsTransform) {
-                getLog().debug("Skipping XSL transformation.  File " + fileNames[i] + " is up-to-date.");
-            } else {
-                filesTransformed++;
-
-                // Perform transformation.
-                try {
-                    t = newTransformer(template, pTransformationSet);
-                    t.setURIResolver(pResolver);
-
-                    NameValuePair[] parameters = pTransformationSet.getParameters();
-                    if (parameters != null) {
-                        for (int j = 0; j < parameters.length; j++) {
-                            NameValuePair key = parameters[j];
-                            getLog().debug("Setting Parameter: " + key.getName() + "=" + key.getValue());
-                            t.setParameter(key.getName(), key.getValue());
-                        }
-                    }
-
-                    transform(t, input, output, pResolver);
-
-                } catch (TransformerConfigurationException e) {
-                    throw new MojoExecutionException("Failed to create Transformer: " + e.getMessage(), e);
+            result.add(new Target(
+                    stylesheetNames,
+                    getOutputDir(pTransformationSet.getOutputDir()),
+                    pTransformationSet.getFileMappers(),
+                    pTransformationSet.getParameters(),
+                    pTransformationSet.getOutputProperties(),
+                    pTransformationSet.isTransientOutput(),
+                    rules,
+                    projection));
+        } else {
+            if (stylesheetNames != null) {
+                throw new MojoFailureException(
+                        "A transformation set with targets must not configure the stylesheet, or stylesheets elements.");
+            }
+            for (TransformationTarget target : targets) {
+                final String[] names = getStylesheetNames(target.getStylesheet(), target.getStylesheets());
+                if (names == null) {
+                    throw new MojoFailureException("No stylesheet configured for a target of a transformation set.");
                 }
+                final File outputDir =
+                        target.getOutputDir() == null ? pTransformationSet.getOutputDir() : target.getOutputDir();
+                final FileMapper[] fileMappers =
+                        target.getFileMappers() == null ? pTransformationSet.getFileMappers() : target.getFileMappers();
+                result.add(new Target(
+                        names,
+                        getOutputDir(outputDir),
+                        fileMappers,
+                        concat(pTransformationSet.getParameters(), target.getParameters()),
+                        concat(pTransformationSet.getOutputProperties(), target.getOutputProperties()),
+                        pTransformationSet.isTransientOutput(),
+                        rules,
+                        projection));
             }
-        } // end file loop
-
-        if (filesTransformed > 0) {
-            getLog().info("Transformed " + filesTransformed + " file(s).");
-        }
-
-        if (pTransformationSet.isAddedToClasspath()) {
-            addToClasspath(getOutputDir(pTransformationSet.getOutputDir()));
         }
-    }
-
-    private Transformer newTransformer(Templates template, TransformationSet pTransformationSet)
-            throws TransformerConfigurationException, MojoExecutionException, MojoFailureException {
-        Transformer t = template.newTransformer();
-        NameValuePair[] properties = pTransformationSet.getOutputProperties();
-        if (properties != null) {
-            for (int i = 0; i < properties.length; i++) {
-                final String name = properties[i].getName();
-                if (name == null || "".equals(name)) {
-                    throw new MojoFailureException("Missing or empty output property name");
-                }
-                final String value = properties[i].getValue();
-                if (value == null) {
-                    throw new MojoFailureException("Missing value for output property " + name);
+        final ParameterSet[] parameterSets = pTransformationSet.getParameterSets();
+        final List<Target> expandedResult;
+        if (parameterSets == null || parameterSets.length == 0) {
+            expandedResult = result;
+        } else {
+            // Every target is combined with every parameter set.
+            expandedResult = new ArrayList<Target>(result.size() * parameterSets.length);
+            for (Target target : result) {
+                for (ParameterSet parameterSet : parameterSets) {
+                    expandedResult.add(new Target(
+                            target.stylesheetNames,
+                            parameterSet.getOutputDir() == null
+                                    ? target.outputDir
+                                    : getOutputDir(parameterSet.getOutputDir()),
+                            concat(target.fileMappers, parameterSet.getFileMappers()),
+                            concat(target.parameters, parameterSet.getParameters()),
+                            target.outputProperties,
+                            target.transientOutput,
+                            target.rules,
+                            target.projection));
                 }
-                try {
-                    t.setOutputProperty(name, value);
-                } catch (IllegalArgumentException e) {
-                    throw new MojoExecutionException(
-                            "Unsupported property name or value: " + name + " => " + value + e.getMessage(), e);
+            }
+        }
+        // Targets, which use the same stylesheet, share the compiled stylesheet.
+        final Map<String, Templates> templatesByName = new HashMap<String, Templates>();
+        for (Target target : expandedResult) {
+            for (String stylesheetName : target.stylesheetNames) {
+                final URL stylesheetUrl = getResource(stylesheetName);
+                target.stylesheetUrls.add(stylesheetUrl);
+                Templates templates = templatesByName.get(stylesheetName);
+                if (templates == null) {
+                    templates = getTemplate(pResolver, stylesheetUrl, pTransformationSet, pModules);
+                    templatesByName.put(stylesheetName, templates);
                 }
+                target.templates.add(templates);
             }
         }
-        return t;
+        return expandedResult;
     }
 
     /**
-     * Called by Maven to run the plugin.
+     * Returns the compiled rewrite rules of a transformation set.
+     *
+     * @return The rules, or an empty list, if no rules are configured.
      */
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        if (isSkipping()) {
-            getLog().debug("Skipping execution, as demanded by user.");
-            return;
+    private static List<RewriteFilter.Rule> getRules(TransformationSet pTransformationSet) throws MojoFailureException {
+        final RewriteRule[] rules = pTransformationSet.getRules();
+        if (rules == null || rules.length == 0) {
+            return Collections.emptyList();
         }
-        if (transformationSets == null || transformationSets.length == 0) {
-            throw new MojoFailureException("No TransformationSets configured.");
+        if (pTransformationSet.getAggregateOutput() != null) {
+            // The input files of an aggregating set are read by the stylesheet, not by the transformer.
+            throw new MojoFailureException("Rewrite rules are not supported by aggregating transformation sets.");
+        }
+        try {
+            return RewriteFilter.compile(rules);
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the compiled projection of a transformation set.
+     *
+     * @return The projection, or null, if no projection is configured.
+     */
+    private static ProjectionFilter.Paths getProjection(TransformationSet pTransformationSet)
+            throws MojoFailureException {
+        final ProjectionFilter.Paths projection;
+        try {
+            projection = ProjectionFilter.compile(pTransformationSet.getProjection());
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+        if (projection != null && pTransformationSet.getAggregateOutput() != null) {
+            // The input files of an aggregating set are read by the stylesheet, not by the transformer.
+            throw new MojoFailureException("A projection is not supported by aggregating transformation sets.");
+        }
+        return projection;
+    }
+
+    private static <T> T[] concat(T[] pValues1, T[] pValues2) {
+        if (pValues1 == null || pValues1.length == 0) {
+            return pValues2;
+        }
+        if (pValues2 == null || pValues2.length == 0) {
+            return pValues1;
+        }
+        final T[] result = Arrays.copyOf(pValues1, pValues1.length + pValues2.length);
+        System.arraycopy(pValues2, 0, result, pValues1.length, pValues2.length);
+        return result;
+    }
+
+    /**
+     * Returns the transformer factory, which is used for parsing input files in fan-out mode, and for chaining
+     * the stages of a pipeline.
+     */
+    private TransformerFactory getTransformerFactory(List<Target> pTargets)
+            throws MojoFailureException, MojoExecutionException {
+        final TransformerFactory tf = getTransformerFactory();
+        for (Target target : pTargets) {
+            if (target.templates.size() > 1
+                    && (!tf.getFeature(SAXSource.FEATURE) || !tf.getFeature(SAXResult.FEATURE))) {
+                throw new MojoFailureException(
+                        "The transformer factory " + tf.getClass().getName()
+                                + " doesn't support SAX pipelines, which are required for multiple stylesheets.");
+            }
+        }
+        return tf;
+    }
+
+    /**
+     * Returns the location of a transformation sets dependency manifest.
+     */
+    private File getManifestFile(TransformationSet pTransformationSet, File pInputDir, List<Target> pTargets) {
+        return getStateFile("transform-", getKey(pTransformationSet, pInputDir, pTargets), ".manifest");
+    }
+
+    /**
+     * Returns a key, which identifies a transformation set by its input, and output locations.
+     */
+    private String getKey(TransformationSet pTransformationSet, File pInputDir, List<Target> pTargets) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(pInputDir.getAbsolutePath()).append('\n');
+        for (Target target : pTargets) {
+            sb.append(target.outputDir.getAbsolutePath()).append('\n');
+            append(sb, target.stylesheetNames);
+        }
+        append(sb, pTransformationSet.getIncludes());
+        append(sb, pTransformationSet.getExcludes());
+        return ContentHash.of(sb.toString()).substring(0, 16);
+    }
+
+    /**
+     * Returns a hash of those parts of a transformation sets configuration, which affect the generated output.
+     * Unlike the projects POM, which used to be a dependency of all outputs, this doesn't change, if unrelated
+     * parts of the POM are modified.
+     */
+    private String getConfigurationHash(TransformationSet pTransformationSet, List<Target> pTargets) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(transformerFactory).append('\n');
+        for (Target target : pTargets) {
+            append(sb, target.stylesheetNames);
+            append(sb, target.parameters);
+            append(sb, target.outputProperties);
+        }
+        final RewriteRule[] rules = pTransformationSet.getRules();
+        if (rules != null) {
+            for (RewriteRule rule : rules) {
+                append(sb, new String[] {
+                    rule.getAction(), rule.getMatch(), rule.getName(), rule.getValue(), rule.getPattern()
+                });
+            }
+        }
+        final Projection projection = pTransformationSet.getProjection();
+        if (projection != null) {
+            append(sb, projection.getKeep());
+            append(sb, projection.getDrop());
+        }
+        append(sb, pTransformationSet.getFeatures());
+        append(sb, pTransformationSet.getAttributes());
+        sb.append(getCatalogConfiguration()).append('\n');
+        sb.append(pTransformationSet.isValidating()).append(',');
+        sb.append(pTransformationSet.isXincludeAware()).append('\n');
+        return ContentHash.of(sb.toString());
+    }
+
+    private static void append(StringBuilder pSb, String[] pValues) {
+        if (pValues != null) {
+            for (String value : pValues) {
+                pSb.append(value).append(',');
+            }
+        }
+        pSb.append('\n');
+    }
+
+    private static void append(StringBuilder pSb, NameValuePair[] pValues) {
+        if (pValues != null) {
+            for (NameValuePair value : pValues) {
+                pSb.append(value.getName()).append('=').append(value.getValue()).append(',');
+            }
+        }
+        pSb.append('\n');
+    }
+
+    /**
+     * Returns the system ID's of the configured catalogs.
+     */
+    private List<String> getCatalogSystemIds() {
+        final List<String> result = new ArrayList<String>();
+        for (File catalogFile : catalogFiles) {
+            result.add(catalogFile.toURI().toString());
+        }
+        for (URL catalogUrl : catalogUrls) {
+            result.add(catalogUrl.toExternalForm());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the system ID's of a transformation sets "otherDepends" entries, which may be URL's, or file names.
+     */
+    private List<String> getOtherDependsSystemIds(TransformationSet pTransformationSet) {
+        final List<String> result = new ArrayList<String>();
+        final String[] otherDepends = pTransformationSet.getOtherDepends();
+        if (otherDepends != null) {
+            for (String otherDepend : otherDepends) {
+                try {
+                    result.add(new URL(otherDepend).toExternalForm());
+                } catch (MalformedURLException e) {
+                    result.add(asAbsoluteFile(new File(otherDepend)).toURI().toString());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of threads, which are used for transforming the given number of files.
+     */
+    private int getThreads(TransformationSet pTransformationSet, int pNumFiles) throws MojoFailureException {
+        int result = pTransformationSet.getThreads();
+        if (result == 0) {
+            result = threads;
+        }
+        if (result < 1) {
+            throw new MojoFailureException("The number of threads must be a positive number, got " + result);
+        }
+        return Math.max(1, Math.min(result, pNumFiles));
+    }
+
+    /**
+     * Returns the number of threads, which are used for applying the given number of targets to a single file. By
+     * default, these are the threads of the pool, which aren't needed for the files.
+     */
+    private int getTargetThreads(int pNumTargets, int pFileThreads) {
+        final int result = targetThreads == 0 ? getPoolSize() / pFileThreads : targetThreads;
+        return Math.max(1, Math.min(result, pNumTargets));
+    }
+
+    /**
+     * Creates a pool of resolvers, one per worker thread, because the catalog resolver isn't thread safe.
+     */
+    private BlockingQueue<Resolver> newResolverPool(
+            Resolver pResolver, TransformationSet pTransformationSet, int pThreads)
+            throws MojoExecutionException, MojoFailureException {
+        final BlockingQueue<Resolver> result = new ArrayBlockingQueue<Resolver>(pThreads);
+        result.add(pResolver);
+        for (int i = 1; i < pThreads; i++) {
+            result.add(acquireResolver(pTransformationSet));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a resolver, which is configured for the given transformation set, and isn't used by any other
+     * transformation set. The resolver must be returned by invoking {@link #releaseResolvers(Collection)}.
+     */
+    private synchronized Resolver acquireResolver(TransformationSet pTransformationSet)
+            throws MojoExecutionException, MojoFailureException {
+        final Resolver resolver =
+                idleResolvers.isEmpty() ? getResolver() : idleResolvers.remove(idleResolvers.size() - 1);
+        resolver.setXincludeAware(pTransformationSet.isXincludeAware());
+        resolver.setValidating(pTransformationSet.isValidating());
+        if (documentCacheSize > 0 && !documentCaches.containsKey(resolver)) {
+            documentCaches.put(
+                    resolver, new DocumentCache(resolver, getTransformerFactory(), documentCacheSize * 1024L));
+        }
+        return resolver;
+    }
+
+    private synchronized void releaseResolvers(Collection<Resolver> pResolvers) {
+        idleResolvers.addAll(pResolvers);
+    }
+
+    /**
+     * Transforms a single file. Invoked by the worker threads, thus must not modify the Mojo's state.
+     *
+     * @param pResolvers    The pool of resolvers. A resolver is taken from the pool for every concurrent
+     *                      transformation.
+     * @param pTargetThreads The number of threads, which are used for applying the targets concurrently.
+     * @param pDependencies If not null, receives the resources, which have been read.
+     * @param pUnchanged    Incremented for every output file, which is unchanged, and has been kept.
+     */
+    private void transform(
+            final BlockingQueue<Resolver> pResolvers,
+            final TransformerFactory pFactory,
+            final List<Target> pTargets,
+            final FileTransformation pFileTransformation,
+            int pTargetThreads,
+            final Collection<String> pDependencies,
+            final AtomicInteger pUnchanged)
+            throws MojoExecutionException, MojoFailureException {
+        final File input = pFileTransformation.input;
+        final List<Integer> indexes = new ArrayList<Integer>();
+        for (int i = 0; i < pTargets.size(); i++) {
+            if (pFileTransformation.outputs[i] != null) {
+                indexes.add(i);
+            }
+        }
+        // A transient input file isn't parsed at all. In fan-out mode, the input file is parsed only once. The tree
+        // is released after the last target.
+        final SaxBuffer transientInput = transientOutputs.get(input);
+        final String systemId = toSystemId(input);
+        final SaxBuffer tree;
+        final Resolver resolver = takeResolver(pResolvers, pDependencies);
+        try {
+            // The projection is the same for all targets, so it is applied before the input is buffered.
+            final ProjectionFilter.Paths projection = pTargets.get(0).projection;
+            if (transientInput != null && projection == null) {
+                tree = transientInput;
+            } else if (transientInput != null || indexes.size() > 1) {
+                final Source transientSource = transientInput == null ? null : transientInput.newSource(systemId);
+                tree = parse(
+                        resolver,
+                        pFactory,
+                        projection == null
+                                ? transientSource
+                                : applyFilters(
+                                        resolver,
+                                        pFactory,
+                                        projection,
+                                        Collections.<RewriteFilter.Rule>emptyList(),
+                                        transientSource,
+                                        input),
+                        input);
+            } else {
+                tree = null;
+            }
+            if (pTargetThreads <= 1 || indexes.size() <= 1) {
+                for (int i : indexes) {
+                    final Source source = tree == null ? null : tree.newSource(systemId);
+                    if (!transform(
+                            resolver, pFactory, pTargets.get(i), source, input, pFileTransformation.outputs[i])) {
+                        pUnchanged.incrementAndGet();
+                    }
+                }
+                return;
+            }
+        } finally {
+            releaseResolver(pResolvers, resolver);
+        }
+
+        // The targets are applied concurrently. Every thread replays the buffered tree.
+        final List<TaskRunner.Task<Void>> tasks = new ArrayList<TaskRunner.Task<Void>>(indexes.size());
+        for (final int i : indexes) {
+            tasks.add(new TaskRunner.Task<Void>() {
+                public Void call() throws MojoExecutionException, MojoFailureException {
+                    final Resolver resolver = takeResolver(pResolvers, pDependencies);
+                    try {
+                        if (!transform(
+                                resolver,
+                                pFactory,
+                                pTargets.get(i),
+                                tree.newSource(systemId),
+                                input,
+                                pFileTransformation.outputs[i])) {
+                            pUnchanged.incrementAndGet();
+                        }
+                    } finally {
+                        releaseResolver(pResolvers, resolver);
+                    }
+                    return null;
+                }
+            });
+        }
+        // The tasks run on the shared pool, and in the calling worker thread.
+        taskRunner.run(pTargetThreads, tasks, (TaskRunner.Callback<Void>) null);
+    }
+
+    private static Resolver takeResolver(BlockingQueue<Resolver> pResolvers, Collection<String> pDependencies) {
+        final Resolver resolver = pResolvers.remove();
+        resolver.setRecorder(pDependencies);
+        return resolver;
+    }
+
+    private static void releaseResolver(BlockingQueue<Resolver> pResolvers, Resolver pResolver) {
+        pResolver.setRecorder(null);
+        pResolvers.add(pResolver);
+    }
+
+    private static String toSystemId(File pFile) throws MojoExecutionException {
+        try {
+            return pFile.toURI().toURL().toExternalForm();
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Failed to convert file " + pFile.getPath() + " into an URL", e);
+        }
+    }
+
+    /**
+     * Parses an input file into a tree, which can be transformed repeatedly, and concurrently.
+     *
+     * @param pTree The input files transient tree, or null, if the input file must be parsed.
+     */
+    private SaxBuffer parse(Resolver pResolver, TransformerFactory pFactory, Source pTree, File pInput)
+            throws MojoExecutionException {
+        try {
+            final String parentFile = pInput.getParent() == null
+                    ? null
+                    : pInput.getParentFile().toURI().toURL().toExternalForm();
+            final String systemId = pInput.toURI().toURL().toExternalForm();
+            final Transformer identity;
+            synchronized (pFactory) {
+                identity = pFactory.newTransformer();
+            }
+            final SaxBuffer buffer = new SaxBuffer();
+            final SAXResult result = new SAXResult(buffer);
+            result.setLexicalHandler(buffer);
+            identity.transform(pTree == null ? pResolver.resolve(systemId, parentFile) : pTree, result);
+            return buffer;
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Failed to read input file " + pInput.getPath() + ": " + e.getMessage(), e);
+        } catch (TransformerException e) {
+            throw new MojoExecutionException(
+                    "Failed to parse input file " + pInput.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Applies a targets stylesheets to a single input file.
+     *
+     * @param pTree The parsed input file, or null, if the input file is being parsed by the transformer.
+     * @return False, if the output file is unchanged, and has been kept. Otherwise true.
+     */
+    private boolean transform(
+            Resolver pResolver, TransformerFactory pFactory, Target pTarget, Source pTree, File pInput, File pOutput)
+            throws MojoExecutionException, MojoFailureException {
+        try {
+            // The transformers of all stages are reused for all files, which are transformed by the same worker.
+            // They are configured only once, because parameters, and output properties, are retained across
+            // transformations. (Transformer.reset() must not be used, because it would discard them.)
+            Transformer[] stages = pTarget.transformers.remove(pResolver);
+            if (stages == null) {
+                stages = newStages(pFactory, pResolver, pTarget);
+            }
+            // A buffered tree has already been projected by the worker.
+            final ProjectionFilter.Paths projection = pTree instanceof SAXSource ? null : pTarget.projection;
+            final Source source = projection == null && pTarget.rules.isEmpty()
+                    ? pTree
+                    : applyFilters(pResolver, pFactory, projection, pTarget.rules, pTree, pInput);
+            final boolean changed = pTarget.transientOutput
+                    ? transformToTree(pFactory, stages, source, pInput, pOutput, pResolver, pTarget.consumerDirs)
+                    : transform(stages, source, pInput, pOutput, pResolver);
+            // Not reached, if the transformation failed, so that transformers in an undefined state are discarded.
+            pTarget.transformers.put(pResolver, stages);
+            return changed;
+        } catch (TransformerConfigurationException e) {
+            throw new MojoExecutionException("Failed to create Transformer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates, and configures, the transformers of a targets pipeline stages for a single worker. Output properties
+     * apply to the last stage, which writes the output file, parameters to all stages.
+     */
+    private Transformer[] newStages(TransformerFactory pFactory, Resolver pResolver, Target pTarget)
+            throws TransformerConfigurationException, MojoExecutionException, MojoFailureException {
+        final List<Templates> templates = pTarget.templates;
+        final Transformer[] stages = new Transformer[Math.max(1, templates.size())];
+        for (int i = 0; i < stages.length; i++) {
+            if (templates.isEmpty()) {
+                synchronized (pFactory) {
+                    stages[i] = pFactory.newTransformer();
+                }
+            } else {
+                stages[i] = templates.get(i).newTransformer();
+                if (pTarget.profiler != null && !pTarget.profiler.attach(stages[i])) {
+                    throw new MojoExecutionException("Profiling has been requested, but the transformer "
+                            + stages[i].getClass().getName() + " doesn't support trace listeners. Profiling requires"
+                            + " Xalan: Add it as a plugin dependency, and set \"transformerFactory\" to"
+                            + " org.apache.xalan.processor.TransformerFactoryImpl, or disable \"profile\".");
+                }
+            }
+            setParameters(stages[i], pResolver, pTarget);
+        }
+        setOutputProperties(stages[stages.length - 1], pTarget);
+        return stages;
+    }
+
+    /**
+     * Returns a source, which applies the given projection, and rewrite rules, to an input file, while it is being
+     * parsed. The projection is applied first.
+     *
+     * @param pProjection The projection, or null.
+     * @param pTree The parsed input file, or null, if the input file must be parsed.
+     */
+    private Source applyFilters(
+            Resolver pResolver,
+            TransformerFactory pFactory,
+            ProjectionFilter.Paths pProjection,
+            List<RewriteFilter.Rule> pRules,
+            Source pTree,
+            File pInput)
+            throws MojoExecutionException {
+        try {
+            final String systemId = toSystemId(pInput);
+            Source source = pTree;
+            if (source == null) {
+                final String parentFile = pInput.getParent() == null ? null : toSystemId(pInput.getParentFile());
+                source = pResolver.resolve(systemId, parentFile);
+            }
+            if (source instanceof DOMSource) {
+                // A DOM tree, like the file list of an aggregating set, is streamed from a buffer.
+                source = parse(pResolver, pFactory, source, pInput).newSource(systemId);
+            }
+            XMLReader reader = source instanceof SAXSource ? ((SAXSource) source).getXMLReader() : null;
+            if (reader == null) {
+                final SAXParserFactory spf = SAXParserFactory.newInstance();
+                spf.setValidating(pResolver.isValidating());
+                spf.setNamespaceAware(true);
+                spf.setXIncludeAware(pResolver.isXincludeAware());
+                reader = spf.newSAXParser().getXMLReader();
+                reader.setEntityResolver(pResolver);
+            }
+            final InputSource isource = SAXSource.sourceToInputSource(source);
+            if (isource == null) {
+                throw new MojoExecutionException("Unsupported source type for input file " + pInput.getPath() + ": "
+                        + source.getClass().getName());
+            }
+            if (isource.getSystemId() == null) {
+                isource.setSystemId(systemId);
+            }
+            if (pProjection != null) {
+                reader = new ProjectionFilter(reader, pProjection);
+            }
+            if (!pRules.isEmpty()) {
+                reader = new RewriteFilter(reader, pRules);
+            }
+            return new SAXSource(reader, isource);
+        } catch (TransformerException e) {
+            throw new MojoExecutionException(
+                    "Failed to parse input file " + pInput.getPath() + ": " + e.getMessage(), e);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new MojoExecutionException("Failed to create XML parser: " + e.getMessage(), e);
+        }
+    }
+
+    private void setParameters(Transformer pTransformer, Resolver pResolver, Target pTarget) {
+        final DocumentCache documentCache = documentCaches.get(pResolver);
+        pTransformer.setURIResolver(documentCache == null ? pResolver : documentCache);
+        NameValuePair[] parameters = pTarget.parameters;
+        if (parameters != null) {
+            for (int j = 0; j < parameters.length; j++) {
+                NameValuePair key = parameters[j];
+                getLog().debug("Setting Parameter: " + key.getName() + "=" + key.getValue());
+                pTransformer.setParameter(key.getName(), key.getValue());
+            }
+        }
+    }
+
+    /**
+     * Transforms the files of a transformation set. The set consumes the transient outputs within its input
+     * directory, whether it reads them, or not: Every transient input file is released after it has been
+     * transformed, and the remaining ones are released at the end.
+     *
+     * @param pConsumerDirs The input directories of the subsequent sets, which consume the sets transient outputs.
+     */
+    private void transform(
+            Resolver pResolver,
+            TransformationSet pTransformationSet,
+            Collection<File> pConsumerDirs,
+            TimingReport.Group pTiming)
+            throws MojoExecutionException, MojoFailureException {
+        final Set<File> transientInputs = Collections.synchronizedSet(new HashSet<File>());
+        if (pTransformationSet.getDir() != null) {
+            final File inputDir = getDir(pTransformationSet.getDir());
+            for (String fileName : transientOutputs.getFileNames(inputDir, null, null)) {
+                transientInputs.add(getFile(inputDir, fileName));
+            }
+        }
+        try {
+            transform(pResolver, pTransformationSet, pConsumerDirs, transientInputs, pTiming);
+        } finally {
+            for (File transientInput : transientInputs) {
+                transientOutputs.release(transientInput);
+            }
+        }
+    }
+
+    private void transform(
+            Resolver pResolver,
+            final TransformationSet pTransformationSet,
+            Collection<File> pConsumerDirs,
+            final Set<File> pTransientInputs,
+            final TimingReport.Group pTiming)
+            throws MojoExecutionException, MojoFailureException {
+        final String[] excludes =
+                getExcludes(pTransformationSet.getExcludes(), pTransformationSet.isSkipDefaultExcludes());
+        String[] fileNames;
+        final List<String> transientFileNames = pTransformationSet.getDir() == null
+                ? Collections.<String>emptyList()
+                : transientOutputs.getFileNames(
+                        getDir(pTransformationSet.getDir()), pTransformationSet.getIncludes(), excludes);
+        if (transientFileNames.isEmpty()) {
+            fileNames = getFileNames(pTransformationSet.getDir(), pTransformationSet.getIncludes(), excludes);
+        } else {
+            // The input directory contains transient outputs of a preceding set, and possibly other files.
+            final Set<String> names = new TreeSet<String>(transientFileNames);
+            if (getDir(pTransformationSet.getDir()).isDirectory()) {
+                names.addAll(Arrays.asList(
+                        getFileNames(pTransformationSet.getDir(), pTransformationSet.getIncludes(), excludes)));
+            }
+            fileNames = names.toArray(new String[names.size()]);
+        }
+        if (fileNames == null || fileNames.length == 0) {
+            getLog().warn("No files found for transformation by stylesheet " + pTransformationSet.getStylesheet());
+            return;
+        }
+
+        final Map<String, String> modules = new LinkedHashMap<String, String>();
+        final List<Target> targets = getTargets(pResolver, pTransformationSet, modules);
+        if (targets == null) {
+            getLog().warn("No stylesheet configured.");
+            return;
+        }
+        final TransformerFactory factory = getTransformerFactory(targets);
+
+        File inputDir = getDir(pTransformationSet.getDir());
+        final List<File> inputs = new ArrayList<File>(fileNames.length);
+        for (int i = 0; i < fileNames.length; i++) {
+            inputs.add(getFile(inputDir, fileNames[i]));
+        }
+        final TemplateProfiler profiler = profile ? new TemplateProfiler() : null;
+        for (Target target : targets) {
+            target.profiler = profiler;
+            target.consumerDirs = pConsumerDirs;
+        }
+        if (pTransformationSet.getAggregateOutput() != null) {
+            transformAggregate(pResolver, pTransformationSet, factory, targets, inputDir, fileNames, inputs, pTiming);
+            writeProfile(profiler, pTransformationSet, inputDir, targets);
+            addToClasspath(pTransformationSet, targets);
+            return;
+        }
+
+        final DependencyManifest manifest;
+        final Set<String> sharedDependencies = new LinkedHashSet<String>();
+        if (dependencyManifest) {
+            manifest = DependencyManifest.load(
+                    getManifestFile(pTransformationSet, inputDir, targets),
+                    getConfigurationHash(pTransformationSet, targets),
+                    getLog());
+            for (Target target : targets) {
+                for (URL stylesheetUrl : target.stylesheetUrls) {
+                    sharedDependencies.add(stylesheetUrl.toExternalForm());
+                }
+            }
+            sharedDependencies.addAll(modules.keySet());
+            sharedDependencies.addAll(getCatalogSystemIds());
+            sharedDependencies.addAll(getOtherDependsSystemIds(pTransformationSet));
+        } else {
+            manifest = null;
+        }
+
+        // Perform up-to-date-check, for every target separately. The output files of a target are null, if they
+        // are up-to-date.
+        final List<File> allOutputs = new ArrayList<File>(fileNames.length * targets.size());
+        final File[][] outputs = new File[fileNames.length][targets.size()];
+        boolean allUpToDate = !forceCreation;
+        for (int t = 0; t < targets.size(); t++) {
+            final Target target = targets.get(t);
+            final List<File> targetOutputs = new ArrayList<File>(fileNames.length);
+            for (int i = 0; i < fileNames.length; i++) {
+                targetOutputs.add(getOutputFile(target.outputDir, fileNames[i], target.fileMappers));
+            }
+            allOutputs.addAll(targetOutputs);
+
+            final boolean[] upToDate = new boolean[fileNames.length];
+            if (forceCreation) {
+                // Nothing to do, all files are transformed.
+            } else if (manifest != null) {
+                for (int i = 0; i < fileNames.length; i++) {
+                    upToDate[i] = manifest.isUpToDate(targetOutputs.get(i));
+                    allUpToDate &= upToDate[i];
+                }
+            } else if (!isUpToDate(pTransformationSet, target.stylesheetUrls, inputs, targetOutputs, upToDate)) {
+                allUpToDate = false;
+            }
+            for (int i = 0; i < fileNames.length; i++) {
+                if (upToDate[i] && transientOutputs.get(inputs.get(i)) != null) {
+                    // The input file has been created in memory by a preceding set, so it cannot be up-to-date.
+                    upToDate[i] = false;
+                    allUpToDate = false;
+                }
+                if (!upToDate[i]) {
+                    outputs[i][t] = targetOutputs.get(i);
+                }
+            }
+        }
+        if (new HashSet<File>(allOutputs).size() < allOutputs.size()) {
+            throw new MojoFailureException("Multiple targets, or parameter sets, of a transformation set write the"
+                    + " same output file. Use different output directories, or file mappers.");
+        }
+        if (allUpToDate) {
+            getLog().info("All " + fileNames.length + " file(s) are up-to-date, skipping transformation set.");
+        }
+
+        final List<FileTransformation> fileTransformations = new ArrayList<FileTransformation>();
+        for (int i = 0; i < fileNames.length; i++) {
+            boolean upToDate = true;
+            for (File output : outputs[i]) {
+                upToDate &= output == null;
+            }
+            if (upToDate) {
+                getLog().debug("Skipping XSL transformation.  File " + fileNames[i] + " is up-to-date.");
+            } else {
+                fileTransformations.add(new FileTransformation(inputs.get(i), outputs[i]));
+            }
+        } // end file loop
+
+        final AtomicInteger unchanged = new AtomicInteger();
+        final int numThreads = getThreads(pTransformationSet, fileTransformations.size());
+        final int targetThreads = getTargetThreads(targets.size(), numThreads);
+        final BlockingQueue<Resolver> resolvers =
+                newResolverPool(pResolver, pTransformationSet, numThreads * targetThreads);
+        final List<TaskRunner.Task<File>> tasks = new ArrayList<TaskRunner.Task<File>>(fileTransformations.size());
+        for (final FileTransformation fileTransformation : fileTransformations) {
+            tasks.add(new TaskRunner.Task<File>() {
+                public File call() throws MojoExecutionException, MojoFailureException {
+                    if (numThreads <= 1) {
+                        getLog().info("Transforming file: " + fileTransformation.input.getPath());
+                    }
+                    final Set<String> dependencies =
+                            manifest == null ? null : Collections.synchronizedSet(new LinkedHashSet<String>());
+                    final long start = System.nanoTime();
+                    transform(resolvers, factory, targets, fileTransformation, targetThreads, dependencies, unchanged);
+                    if (pTransientInputs.remove(fileTransformation.input)) {
+                        transientOutputs.release(fileTransformation.input);
+                    }
+                    if (pTiming != null) {
+                        pTiming.add(
+                                fileTransformation.input,
+                                start,
+                                fileTransformation.input.length(),
+                                getBytesWritten(fileTransformation.outputs));
+                    }
+                    if (manifest != null) {
+                        dependencies.addAll(sharedDependencies);
+                        for (File output : fileTransformation.outputs) {
+                            // Transient outputs, which are kept in memory only, must be created again by the next
+                            // build.
+                            if (output != null
+                                    && (materializeTransientOutputs || transientOutputs.get(output) == null)) {
+                                manifest.put(output, dependencies);
+                            }
+                        }
+                    }
+                    return fileTransformation.input;
+                }
+            });
+        }
+        if (numThreads > 1) {
+            // The files are logged before the tasks are submitted, so that the log doesn't depend on the order, in
+            // which the tasks complete.
+            for (FileTransformation fileTransformation : fileTransformations) {
+                getLog().info("Transforming file: " + fileTransformation.input.getPath());
+            }
+        }
+        try {
+            taskRunner.run(numThreads, tasks, (TaskRunner.Callback<File>) null);
+        } finally {
+            resolvers.remove(pResolver);
+            releaseResolvers(resolvers);
+            if (manifest != null) {
+                manifest.retain(allOutputs);
+                try {
+                    manifest.save();
+                } catch (IOException e) {
+                    getLog().warn("Failed to write dependency manifest: " + e.getMessage());
+                }
+            }
+        }
+        final int filesTransformed = fileTransformations.size();
+
+        if (filesTransformed > 0) {
+            getLog().info("Transformed " + filesTransformed + " file(s).");
+            if (writeIfChanged) {
+                getLog().info("Kept " + unchanged.get() + " unchanged output file(s).");
+            }
+        }
+
+        writeProfile(profiler, pTransformationSet, inputDir, targets);
+        addToClasspath(pTransformationSet, targets);
+    }
+
+    /**
+     * Returns the number of bytes, which have been written into the given output files. Transient outputs, which are
+     * kept in memory only, don't count.
+     */
+    private long getBytesWritten(File... pOutputs) {
+        long result = 0;
+        for (File output : pOutputs) {
+            if (output != null && (materializeTransientOutputs || transientOutputs.get(output) == null)) {
+                result += output.length();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the profile of a transformation set, if profiling is enabled.
+     */
+    private void writeProfile(
+            TemplateProfiler pProfiler, TransformationSet pTransformationSet, File pInputDir, List<Target> pTargets) {
+        if (pProfiler == null) {
+            return;
+        }
+        if (pProfiler.getEntries().isEmpty()) {
+            // Nothing has been transformed, so the previous profile is retained.
+            return;
+        }
+        final File file = getStateFile("profile-", getKey(pTransformationSet, pInputDir, pTargets), ".tsv");
+        try {
+            pProfiler.write(file);
+            getLog().info("Wrote template profile to " + file.getPath());
+        } catch (IOException e) {
+            getLog().warn("Failed to write template profile: " + e.getMessage());
+        }
+    }
+
+    private void addToClasspath(TransformationSet pTransformationSet, List<Target> pTargets) {
+        if (pTransformationSet.isAddedToClasspath()) {
+            final Set<File> outputDirs = new LinkedHashSet<File>();
+            for (Target target : pTargets) {
+                if (outputDirs.add(target.outputDir)) {
+                    addToClasspath(target.outputDir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Transforms all input files of a transformation set into a single output file per target. The stylesheet is
+     * applied once, to a generated document, which lists the input files:
+     * <pre>
+     *   &lt;files&gt;
+     *     &lt;file name="doc1.xml" href="file:/.../doc1.xml"/&gt;
+     *     ...
+     *   &lt;/files&gt;
+     * </pre>
+     * The stylesheet loads the input files by invoking the document() function, so that they are parsed only on
+     * demand, rather than up front. This doesn't limit the memory, which is required: The XSLT processor keeps every
+     * document, which has been loaded by document(), until the end of the transformation, because repeated calls
+     * with the same URI must return the same nodes. The memory is therefore proportional to the total size of the
+     * input files. The same applies to every alternative, like inlining the input files into a generated document,
+     * because an XSLT 1.0 processor builds the whole source tree, before it applies the stylesheet.
+     */
+    private void transformAggregate(
+            Resolver pResolver,
+            TransformationSet pTransformationSet,
+            TransformerFactory pFactory,
+            List<Target> pTargets,
+            File pInputDir,
+            String[] pFileNames,
+            List<File> pInputs,
+            TimingReport.Group pTiming)
+            throws MojoExecutionException, MojoFailureException {
+        // The directories are part of the up-to-date check, because their modification time reflects added, and
+        // removed files.
+        final List<File> dependencies = new ArrayList<File>(pInputs);
+        final Set<File> dirs = new LinkedHashSet<File>();
+        for (File input : pInputs) {
+            if (dirs.add(input.getParentFile())) {
+                dependencies.add(input.getParentFile());
+            }
+        }
+
+        final Source fileList = newFileList(pInputDir, pFileNames, pInputs);
+        int filesTransformed = 0;
+        for (Target target : pTargets) {
+            final File output =
+                    getOutputFile(target.outputDir, pTransformationSet.getAggregateOutput(), target.fileMappers);
+            final boolean[] upToDate = new boolean[dependencies.size()];
+            if (!forceCreation
+                    && isUpToDate(
+                            pTransformationSet,
+                            target.stylesheetUrls,
+                            dependencies,
+                            Collections.nCopies(dependencies.size(), output),
+                            upToDate)) {
+                getLog().info("Output file " + output.getPath() + " is up-to-date, skipping transformation.");
+                continue;
+            }
+            getLog().info("Transforming " + pInputs.size() + " file(s) into " + output.getPath());
+            final long start = System.nanoTime();
+            transform(pResolver, pFactory, target, fileList, pInputDir, output);
+            if (pTiming != null) {
+                long bytesRead = 0;
+                for (File input : pInputs) {
+                    bytesRead += input.length();
+                }
+                pTiming.add(output, start, bytesRead, getBytesWritten(output));
+            }
+            filesTransformed++;
+        }
+        if (filesTransformed > 0) {
+            getLog().info("Transformed " + pInputs.size() + " file(s) into " + filesTransformed + " output file(s).");
+        }
+    }
+
+    /**
+     * Creates the document, which lists the input files of an aggregating transformation set.
+     */
+    private Source newFileList(File pInputDir, String[] pFileNames, List<File> pInputs) throws MojoExecutionException {
+        final Document doc;
+        try {
+            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            doc = dbf.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new MojoExecutionException("Failed to create document builder: " + e.getMessage(), e);
+        }
+        final Element files = doc.createElementNS(null, "files");
+        doc.appendChild(files);
+        for (int i = 0; i < pFileNames.length; i++) {
+            final Element file = doc.createElementNS(null, "file");
+            file.setAttributeNS(null, "name", pFileNames[i].replace(File.separatorChar, '/'));
+            file.setAttributeNS(null, "href", toSystemId(pInputs.get(i)));
+            files.appendChild(file);
+        }
+        return new DOMSource(doc, toSystemId(pInputDir));
+    }
+
+    private void setOutputProperties(Transformer t, Target pTarget)
+            throws MojoExecutionException, MojoFailureException {
+        NameValuePair[] properties = pTarget.outputProperties;
+        if (properties != null) {
+            for (int i = 0; i < properties.length; i++) {
+                final String name = properties[i].getName();
+                if (name == null || "".equals(name)) {
+                    throw new MojoFailureException("Missing or empty output property name");
+                }
+                final String value = properties[i].getValue();
+                if (value == null) {
+                    throw new MojoFailureException("Missing value for output property " + name);
+                }
+                try {
+                    t.setOutputProperty(name, value);
+                } catch (IllegalArgumentException e) {
+                    throw new MojoExecutionException(
+                            "Unsupported property name or value: " + name + " => " + value + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by Maven to run the plugin.
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (isSkipping()) {
+            getLog().debug("Skipping execution, as demanded by user.");
+            return;
+        }
+        if (transformationSets == null || transformationSets.length == 0) {
+            throw new MojoFailureException("No TransformationSets configured.");
         }
         checkCatalogHandling();
+        if (transformationSetThreads < 1) {
+            throw new MojoFailureException("The number of transformation set threads must be a positive number, got "
+                    + transformationSetThreads);
+        }
+        if (targetThreads < 0) {
+            throw new MojoFailureException("The number of target threads must not be negative, got " + targetThreads);
+        }
+        for (int i = 0; i < transformationSets.length; i++) {
+            if (dependencyManifest && transformationSets[i].getAggregateOutput() != null) {
+                throw new MojoFailureException("The transformation set " + getName(i)
+                        + " has an aggregate output, which doesn't support the dependency manifest. Use a separate"
+                        + " execution without \"dependencyManifest\" for this set.");
+            }
+        }
+        final List<int[]> dependencies = getTransformationSetDependencies();
+        urlLastModifiedCache = new UrlLastModifiedCache(urlConnectTimeout, urlReadTimeout);
+        idleResolvers = new ArrayList<Resolver>();
+        documentCaches = new ConcurrentHashMap<Resolver, DocumentCache>();
+        transientOutputs = new TransientOutputs(transientOutputSize * 1024L);
+        catalogFiles = new ArrayList<File>();
+        catalogUrls = new ArrayList<URL>();
+        setCatalogs(catalogFiles, catalogUrls);
 
+        final TimingReport timingReport = newTimingReport("transform");
         Object oldProxySettings = activateProxy();
         try {
-            Resolver resolver = getResolver();
+            final List<TaskRunner.Task<Void>> tasks = new ArrayList<TaskRunner.Task<Void>>(transformationSets.length);
             for (int i = 0; i < transformationSets.length; i++) {
-                TransformationSet transformationSet = transformationSets[i];
-                resolver.setXincludeAware(transformationSet.isXincludeAware());
-                resolver.setValidating(transformationSet.isValidating());
-                transform(resolver, transformationSet);
+                final TransformationSet transformationSet = transformationSets[i];
+                final List<File> consumerDirs = getConsumerDirs(i, dependencies);
+                final TimingReport.Group timing = timingReport == null
+                        ? null
+                        : timingReport.newGroup("transformation set " + getName(i), transformationSet.getDir());
+                tasks.add(new TaskRunner.Task<Void>() {
+                    public Void call() throws MojoExecutionException, MojoFailureException {
+                        final Resolver resolver = acquireResolver(transformationSet);
+                        try {
+                            transform(resolver, transformationSet, consumerDirs, timing);
+                        } finally {
+                            releaseResolvers(Collections.singleton(resolver));
+                        }
+                        return null;
+                    }
+                });
             }
+            taskRunner = new TaskRunner(getPoolSize());
+            taskRunner.run(transformationSetThreads, tasks, dependencies);
+            logDocumentCacheStatistics();
         } finally {
+            if (taskRunner != null) {
+                taskRunner.close();
+                taskRunner = null;
+            }
             passivateProxy(oldProxySettings);
+            finishTimingReport(timingReport);
+        }
+    }
+
+    /**
+     * Returns the size of the thread pool, which is shared by the transformation sets, their files, and targets.
+     */
+    private int getPoolSize() {
+        int result = Math.max(Math.max(transformationSetThreads, threads), targetThreads);
+        for (TransformationSet transformationSet : transformationSets) {
+            result = Math.max(result, transformationSet.getThreads());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dependencies between the transformation sets. A set depends on the sets, which are referenced by
+     * its "dependsOn" element. Furthermore, a set depends on a preceding set, if one of them reads from a directory,
+     * which the other one writes into, so that these sets are transformed in the configured order, unless the
+     * "dependsOn" elements demand the opposite order.
+     *
+     * @return For every transformation set, the indexes of the sets, on which it depends.
+     */
+    private List<int[]> getTransformationSetDependencies() throws MojoFailureException {
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        final List<File> inputDirs = new ArrayList<File>(transformationSets.length);
+        final List<List<File>> outputDirs = new ArrayList<List<File>>(transformationSets.length);
+        for (int i = 0; i < transformationSets.length; i++) {
+            final TransformationSet transformationSet = transformationSets[i];
+            final String id = transformationSet.getId();
+            if (id != null && ids.put(id, i) != null) {
+                throw new MojoFailureException("Duplicate transformation set id: " + id);
+            }
+            inputDirs.add(transformationSet.getDir() == null ? null : getDir(transformationSet.getDir()));
+            outputDirs.add(getOutputDirs(transformationSet));
+        }
+
+        final List<Set<Integer>> dependencies = new ArrayList<Set<Integer>>(transformationSets.length);
+        for (int i = 0; i < transformationSets.length; i++) {
+            final Set<Integer> setDependencies = new TreeSet<Integer>();
+            final String[] dependsOn = transformationSets[i].getDependsOn();
+            if (dependsOn != null) {
+                for (String id : dependsOn) {
+                    final Integer set = ids.get(id);
+                    if (set == null) {
+                        throw new MojoFailureException(
+                                "The transformation set " + getName(i) + " depends on an unknown set: " + id);
+                    }
+                    setDependencies.add(set);
+                }
+            }
+            dependencies.add(setDependencies);
+        }
+        for (int i = 0; i < transformationSets.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if ((isOverlapping(inputDirs.get(i), outputDirs.get(j))
+                                || isOverlapping(inputDirs.get(j), outputDirs.get(i)))
+                        && !isDependent(j, i, dependencies, new HashSet<Integer>())) {
+                    dependencies.get(i).add(j);
+                }
+            }
+        }
+
+        final List<int[]> result = new ArrayList<int[]>(transformationSets.length);
+        for (Set<Integer> setDependencies : dependencies) {
+            final int[] indexes = new int[setDependencies.size()];
+            int n = 0;
+            for (Integer dependency : setDependencies) {
+                indexes[n++] = dependency;
+            }
+            result.add(indexes);
+        }
+
+        final int[] states = new int[transformationSets.length];
+        for (int i = 0; i < transformationSets.length; i++) {
+            checkCycles(i, result, states);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the input directories of the transformation sets, which depend on the given set, directly, or
+     * indirectly, and may therefore consume its transient outputs.
+     */
+    private List<File> getConsumerDirs(int pSet, List<int[]> pDependencies) {
+        final List<File> result = new ArrayList<File>();
+        for (int i = 0; i < transformationSets.length; i++) {
+            if (transformationSets[i].getDir() != null && isDependent(i, pSet, pDependencies)) {
+                result.add(getDir(transformationSets[i].getDir()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns, whether the first set depends on the second set, directly, or indirectly.
+     */
+    private static boolean isDependent(int pSet, int pDependency, List<int[]> pDependencies) {
+        for (int dependency : pDependencies.get(pSet)) {
+            if (dependency == pDependency || isDependent(dependency, pDependency, pDependencies)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns, whether the first set depends on the second set, directly, or indirectly, while the dependencies are
+     * still being collected.
+     */
+    private static boolean isDependent(
+            int pSet, int pDependency, List<Set<Integer>> pDependencies, Set<Integer> pVisited) {
+        if (!pVisited.add(pSet)) {
+            return false;
+        }
+        for (Integer dependency : pDependencies.get(pSet)) {
+            if (dependency == pDependency || isDependent(dependency, pDependency, pDependencies, pVisited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkCycles(int pSet, List<int[]> pDependencies, int[] pStates) throws MojoFailureException {
+        if (pStates[pSet] == 1) {
+            throw new MojoFailureException("The transformation set " + getName(pSet) + " depends on itself.");
+        }
+        if (pStates[pSet] == 0) {
+            pStates[pSet] = 1;
+            for (int dependency : pDependencies.get(pSet)) {
+                checkCycles(dependency, pDependencies, pStates);
+            }
+            pStates[pSet] = 2;
+        }
+    }
+
+    private String getName(int pSet) {
+        final String id = transformationSets[pSet].getId();
+        return id == null ? "#" + (pSet + 1) : id;
+    }
+
+    /**
+     * Returns the directories, into which a transformation set writes. Like in {@link #getTargets}, the output
+     * directory of a parameter set replaces the output directories of the targets.
+     */
+    private List<File> getOutputDirs(TransformationSet pTransformationSet) {
+        final List<File> targetDirs = new ArrayList<File>();
+        final TransformationTarget[] targets = pTransformationSet.getTargets();
+        if (targets == null || targets.length == 0) {
+            targetDirs.add(getOutputDir(pTransformationSet.getOutputDir()));
+        } else {
+            for (TransformationTarget target : targets) {
+                targetDirs.add(getOutputDir(
+                        target.getOutputDir() == null ? pTransformationSet.getOutputDir() : target.getOutputDir()));
+            }
+        }
+        final ParameterSet[] parameterSets = pTransformationSet.getParameterSets();
+        if (parameterSets == null || parameterSets.length == 0) {
+            return targetDirs;
+        }
+        final List<File> result = new ArrayList<File>();
+        for (ParameterSet parameterSet : parameterSets) {
+            if (parameterSet.getOutputDir() == null) {
+                result.addAll(targetDirs);
+            } else {
+                result.add(getOutputDir(parameterSet.getOutputDir()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns, whether the input directory contains one of the output directories, or vice versa.
+     */
+    private static boolean isOverlapping(File pInputDir, List<File> pOutputDirs) {
+        if (pInputDir == null) {
+            return false;
+        }
+        final Path inputPath = pInputDir.toPath().normalize();
+        for (File outputDir : pOutputDirs) {
+            final Path outputPath = outputDir.toPath().normalize();
+            if (inputPath.startsWith(outputPath) || outputPath.startsWith(inputPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void logDocumentCacheStatistics() {
+        if (documentCaches.isEmpty()) {
+            return;
+        }
+        long hits = 0, misses = 0, evictions = 0;
+        for (DocumentCache documentCache : documentCaches.values()) {
+            hits += documentCache.getHits();
+            misses += documentCache.getMisses();
+            evictions += documentCache.getEvictions();
         }
+        getLog().info("Document cache: hits=" + hits + ", misses=" + misses + ", evictions=" + evictions);
     }
 }
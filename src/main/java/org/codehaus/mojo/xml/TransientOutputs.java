@@ -0,0 +1,182 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * The transient outputs of an execution: Result trees of transformation sets, which are passed to subsequent
+ * transformation sets in memory, rather than being written to disk, and parsed again. The total size of the trees
+ * is bounded, outputs exceeding the maximum size are written to disk, as usual.
+ * <p>
+ * Every tree knows the number of its consumers: The subsequent transformation sets, which read from a directory
+ * containing the tree. A tree is removed, once it has been released by its last consumer. The trees are kept as
+ * {@link SaxBuffer buffers}, rather than DOM trees, because a DOM implementation needn't be safe for concurrent
+ * reads, even if it isn't modified: Consumers, which don't depend on each other, may read the same tree
+ * concurrently.
+ * <p>
+ * Instances are safe for use by multiple threads.
+ */
+class TransientOutputs {
+    /**
+     * A single tree, and the number of consumers, which haven't released it yet.
+     */
+    private static class Entry {
+        final SaxBuffer tree;
+        int consumers;
+
+        Entry(SaxBuffer pTree, int pConsumers) {
+            tree = pTree;
+            consumers = pConsumers;
+        }
+    }
+
+    private final long maxSize;
+
+    private final Map<File, Entry> trees = new HashMap<File, Entry>();
+
+    private long size;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pMaxSize The maximum total size, in bytes, of the trees, which are kept in memory.
+     */
+    TransientOutputs(long pMaxSize) {
+        maxSize = pMaxSize;
+    }
+
+    private static File getKey(File pFile) {
+        return pFile.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    /**
+     * Adds the result tree of the given output file.
+     *
+     * @param pConsumerDirs The input directories of the subsequent transformation sets, which consume the outputs
+     *     of the producing set. The number of consumers is the number of directories, which contain the file.
+     * @return True, if the tree has been added. False, if the file has no consumers, or if the maximum size would
+     *     be exceeded, in which case the output must be written to disk.
+     */
+    synchronized boolean put(File pFile, SaxBuffer pTree, Collection<File> pConsumerDirs) {
+        final File key = getKey(pFile);
+        int consumers = 0;
+        for (File dir : pConsumerDirs) {
+            final Path path = getKey(dir).toPath();
+            if (key.toPath().startsWith(path) && !key.toPath().equals(path)) {
+                consumers++;
+            }
+        }
+        final Entry previous = trees.remove(key);
+        if (previous != null) {
+            size -= previous.tree.getSize();
+        }
+        if (consumers == 0 || size + pTree.getSize() > maxSize) {
+            return false;
+        }
+        trees.put(key, new Entry(pTree, consumers));
+        size += pTree.getSize();
+        return true;
+    }
+
+    /**
+     * Returns the result tree of the given file.
+     *
+     * @return The result tree, or null, if the file isn't a transient output.
+     */
+    synchronized SaxBuffer get(File pFile) {
+        if (trees.isEmpty()) {
+            return null;
+        }
+        final Entry entry = trees.get(getKey(pFile));
+        return entry == null ? null : entry.tree;
+    }
+
+    /**
+     * Called by a consumer, which doesn't need the tree of the given file anymore. The tree is removed, if it has
+     * been released by all its consumers.
+     */
+    synchronized void release(File pFile) {
+        final File key = getKey(pFile);
+        final Entry entry = trees.get(key);
+        if (entry != null && --entry.consumers == 0) {
+            trees.remove(key);
+            size -= entry.tree.getSize();
+        }
+    }
+
+    /**
+     * Returns the total size, in bytes, of the trees, which are currently kept in memory.
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the names of the transient outputs within the given directory, which match the given patterns. Like
+     * the names, which are returned by a {@link org.codehaus.plexus.util.DirectoryScanner}, the names are relative
+     * to the directory.
+     *
+     * @param pIncludes The include patterns, or null, in which case all files are included.
+     */
+    synchronized List<String> getFileNames(File pDir, String[] pIncludes, String[] pExcludes) {
+        if (trees.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Path dir = getKey(pDir).toPath();
+        final List<String> result = new ArrayList<String>();
+        for (File file : trees.keySet()) {
+            final Path path = file.toPath();
+            if (path.startsWith(dir) && !path.equals(dir)) {
+                final String name = dir.relativize(path).toString();
+                if (matches(name, pIncludes, true) && !matches(name, pExcludes, false)) {
+                    result.add(name);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static boolean matches(String pName, String[] pPatterns, boolean pDefault) {
+        if (pPatterns == null || pPatterns.length == 0) {
+            return pDefault;
+        }
+        for (String pattern : pPatterns) {
+            String p = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            if (p.endsWith(File.separator)) {
+                p += "**";
+            }
+            if (SelectorUtils.matchPath(p, pName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Looks up the last modification time of URL's for the up-to-date check. Every URL is queried at most once per
+ * instance (typically per mojo execution), and failures are remembered as well, so that an unreachable host costs
+ * at most one timeout. HTTP URL's are queried with a HEAD request. The validators of previous responses
+ * (Last-Modified, and ETag) are kept for the lifetime of the JVM, and sent as If-Modified-Since, and If-None-Match,
+ * so that an unchanged resource is answered with "304 Not Modified". Lookups of different URL's run concurrently,
+ * concurrent lookups of the same URL wait for a single query.
+ */
+class UrlLastModifiedCache {
+    private static class Validator {
+        final long lastModified;
+        final String eTag;
+
+        Validator(long pLastModified, String pETag) {
+            lastModified = pLastModified;
+            eTag = pETag;
+        }
+    }
+
+    private static final Map<String, Validator> VALIDATORS = new ConcurrentHashMap<String, Validator>();
+
+    private final ConcurrentMap<String, FutureTask<Long>> results = new ConcurrentHashMap<String, FutureTask<Long>>();
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pConnectTimeout The connect timeout in milliseconds, 0 for no timeout.
+     * @param pReadTimeout    The read timeout in milliseconds, 0 for no timeout.
+     */
+    UrlLastModifiedCache(int pConnectTimeout, int pReadTimeout) {
+        connectTimeout = pConnectTimeout;
+        readTimeout = pReadTimeout;
+    }
+
+    /**
+     * Returns the given URL's last modification time, as returned by {@link URLConnection#getLastModified()}.
+     *
+     * @throws IOException Querying the URL failed. The failure is remembered, so that subsequent invocations with
+     *                     the same URL fail immediately.
+     */
+    long getLastModified(final URL pUrl) throws IOException {
+        final String key = pUrl.toExternalForm();
+        FutureTask<Long> result = results.get(key);
+        if (result == null) {
+            final FutureTask<Long> task = new FutureTask<Long>(new Callable<Long>() {
+                @Override
+                public Long call() throws IOException {
+                    return Long.valueOf(query(pUrl, key));
+                }
+            });
+            result = results.putIfAbsent(key, task);
+            if (result == null) {
+                result = task;
+                task.run();
+            }
+        }
+        try {
+            return result.get().longValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lookup of " + key);
+        } catch (ExecutionException e) {
+            final Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            throw (Error) t;
+        }
+    }
+
+    private long query(URL pUrl, String pKey) throws IOException {
+        final URLConnection conn = pUrl.openConnection();
+        conn.setUseCaches(false);
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        if (!(conn instanceof HttpURLConnection)) {
+            return conn.getLastModified();
+        }
+        final HttpURLConnection httpConn = (HttpURLConnection) conn;
+        try {
+            httpConn.setRequestMethod("HEAD");
+            final Validator validator = VALIDATORS.get(pKey);
+            if (validator != null) {
+                if (validator.lastModified > 0) {
+                    httpConn.setIfModifiedSince(validator.lastModified);
+                }
+                if (validator.eTag != null) {
+                    httpConn.setRequestProperty("If-None-Match", validator.eTag);
+                }
+            }
+            final int responseCode = httpConn.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && validator != null) {
+                return validator.lastModified;
+            }
+            if (responseCode >= 400) {
+                throw new IOException("Server returned HTTP response code " + responseCode + " for URL " + pKey);
+            }
+            final long lastModified = httpConn.getLastModified();
+            final String eTag = httpConn.getHeaderField("ETag");
+            if (lastModified > 0 || eTag != null) {
+                VALIDATORS.put(pKey, new Validator(lastModified, eTag));
+            } else {
+                VALIDATORS.remove(pKey);
+            }
+            return lastModified;
+        } finally {
+            httpConn.disconnect();
+        }
+    }
+}
@@ -30,7 +30,17 @@ import javax.xml.validation.Validator;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -61,19 +71,90 @@ public class ValidateMojo extends AbstractXmlMojo {
     @Parameter
     private ValidationSet[] validationSets;
 
+    /**
+     * The number of threads, which are used for validating the files of a single validation set. The default value
+     * of 1 validates the files one after another. Every thread has its own validator, but all threads share the
+     * compiled schema. Errors are reported in the order of the files, regardless of the number of threads. May be
+     * overridden per validation set.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.threads", defaultValue = "1")
+    private int threads;
+
+    /**
+     * The maximum number of compiled schemas, which are kept in memory. The cache is shared by all executions of the
+     * validate goal within the same JVM, so that a schema, which is used by multiple modules, is compiled only once
+     * per build. Before a compiled schema is reused, the schema documents, including those, which have been imported,
+     * or included, are checked for modifications. As the cache is shared, its size is the largest value, which has
+     * been configured by any execution. A value of 0 disables the cache for this execution.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.schemaCacheSize", defaultValue = "16")
+    private int schemaCacheSize;
+
+    /**
+     * A directory, where the verdicts of previous validations are stored. A file, which has been found valid, is
+     * skipped by subsequent builds, as long as the file, the schema, and the validation sets configuration are
+     * unchanged. Files, which reference other documents (for example, external entities, or XInclude), are always
+     * validated. By default, no such directory is used. Entries are keyed by content hashes only, so the directory
+     * may be shared by multiple checkouts, or CI workspaces, but must not be writable by untrusted users.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.verdictCacheDirectory")
+    private File verdictCacheDirectory;
+
+    /**
+     * The maximum number of verdicts, which are kept in the verdict cache directory. Least recently used verdicts are
+     * evicted first.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.verdictCacheSize", defaultValue = "100000")
+    private int verdictCacheSize;
+
+    /**
+     * Whether files, which are valid, but have warnings, are added to the verdict cache. If so, the warnings are
+     * stored with the verdict, and reported again, whenever the file is skipped. By default, such files are always
+     * validated.
+     *
+     * @since 1.3.0
+     */
+    @Parameter(property = "xml.verdictCacheWarnings", defaultValue = "false")
+    private boolean verdictCacheWarnings;
+
+    /**
+     * A worker thread's resolver, validator, and parser. None of these is thread safe, so they are used by a single
+     * thread at a time. The parser is configured for the validation set once, and reused for all files, because
+     * creating a parser is more expensive than parsing a small file.
+     */
+    private static class Worker {
+        final Resolver resolver;
+        final Validator validator;
+        final XMLReader reader;
+
+        Worker(Resolver pResolver, Validator pValidator, XMLReader pReader) {
+            resolver = pResolver;
+            validator = pValidator;
+            reader = pReader;
+        }
+    }
+
     /**
      * Reads a validation sets schema.
      *
      * @param pResolver      The resolver to use for loading external entities.
      * @param pValidationSet The validation set to configure.
+     * @param pDocuments     If not null, the schema documents are added to this map, along with their content hashes.
+     *                       A document, which cannot be tracked, is mapped to null.
      * @return The validation sets schema, if any, or null.
      * @throws MojoExecutionException Loading the schema failed.
      */
-    private Schema getSchema(Resolver pResolver, ValidationSet pValidationSet) throws MojoExecutionException {
-        String schemaLanguage = pValidationSet.getSchemaLanguage();
-        if (schemaLanguage == null || "".equals(schemaLanguage)) {
-            schemaLanguage = XMLConstants.W3C_XML_SCHEMA_NS_URI;
-        }
+    private Schema getSchema(Resolver pResolver, ValidationSet pValidationSet, Map<String, String> pDocuments)
+            throws MojoExecutionException {
+        final String schemaLanguage = getSchemaLanguage(pValidationSet);
         final String publicId = pValidationSet.getPublicId();
         final String systemId = pValidationSet.getSystemId();
         if ((publicId == null || "".equals(publicId))
@@ -106,59 +187,166 @@ public class ValidateMojo extends AbstractXmlMojo {
             }
             saxSource = new SAXSource(inputSource);
         }
+
+        final SchemaCache cache = SchemaCache.getInstance();
+        if (schemaCacheSize > 0) {
+            cache.ensureMaxSize(schemaCacheSize);
+        }
+        final String schemaUrl = saxSource == null ? null : getSchemaUrl(saxSource.getInputSource());
+        final List<Object> cacheKey;
+        if (schemaCacheSize > 0 && schemaUrl != null) {
+            cacheKey = new ArrayList<Object>();
+            cacheKey.add(schemaLanguage);
+            cacheKey.add(saxSource.getInputSource().getPublicId());
+            cacheKey.add(schemaUrl);
+            // Catalogs affect the resolution of imported, and included, schema documents.
+            cacheKey.add(getCatalogConfiguration());
+            final Schema schema = cache.get(cacheKey, pDocuments);
+            getLog().debug("Schema cache " + (schema == null ? "miss" : "hit") + " for schema " + schemaUrl + ": "
+                    + cache.getStatistics());
+            if (schema != null) {
+                close(saxSource.getInputSource());
+                return schema;
+            }
+        } else {
+            cacheKey = null;
+        }
+
+        final Collection<String> recorder = pResolver == null ? null : pResolver.getRecorder();
+        final Set<String> documents = new LinkedHashSet<String>();
+        final Schema schema;
         try {
             SchemaFactory schemaFactory = SchemaFactory.newInstance(schemaLanguage);
             if (pResolver != null) {
                 schemaFactory.setResourceResolver(pResolver);
+                pResolver.setRecorder(documents);
             }
-            return saxSource == null ? schemaFactory.newSchema() : schemaFactory.newSchema(saxSource);
+            schema = saxSource == null ? schemaFactory.newSchema() : schemaFactory.newSchema(saxSource);
         } catch (SAXException e) {
             throw new MojoExecutionException(
                     "Failed to load schema with public ID " + publicId + ", system ID " + systemId + ": "
                             + e.getMessage(),
                     e);
+        } finally {
+            if (pResolver != null) {
+                pResolver.setRecorder(recorder);
+            }
+        }
+        if (recorder != null) {
+            recorder.addAll(documents);
+        }
+        if (saxSource != null && (cacheKey != null || pDocuments != null)) {
+            Map<String, String> hashes = null;
+            if (schemaUrl != null) {
+                documents.add(schemaUrl);
+                hashes = getSchemaDocuments(schemaUrl, documents);
+            }
+            if (hashes == null) {
+                if (pDocuments != null) {
+                    pDocuments.put(String.valueOf(schemaUrl), null);
+                }
+            } else {
+                if (pDocuments != null) {
+                    pDocuments.putAll(hashes);
+                }
+                if (cacheKey != null) {
+                    cache.put(cacheKey, schema, hashes);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Returns the validation sets schema language.
+     */
+    private static String getSchemaLanguage(ValidationSet pValidationSet) {
+        final String schemaLanguage = pValidationSet.getSchemaLanguage();
+        if (schemaLanguage == null || "".equals(schemaLanguage)) {
+            return XMLConstants.W3C_XML_SCHEMA_NS_URI;
+        }
+        return schemaLanguage;
+    }
+
+    /**
+     * Returns the URL of a schema, if it can be tracked by the schema cache.
+     *
+     * @return The URL of the schema, or null, if the schema cannot be tracked.
+     */
+    private String getSchemaUrl(InputSource pInputSource) {
+        final String systemId = pInputSource.getSystemId();
+        if (systemId == null) {
+            return null;
+        }
+        try {
+            return new URL(systemId).toExternalForm();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the documents of a compiled schema, mapped to their content hashes.
+     *
+     * @return The documents, or null, if a document cannot be tracked, and the schema must not be cached.
+     */
+    private Map<String, String> getSchemaDocuments(String pSchemaUrl, Collection<String> pDocuments) {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String systemId : pDocuments) {
+            final String hash;
+            try {
+                hash = ContentHash.of(new URL(systemId));
+            } catch (MalformedURLException e) {
+                getLog().debug("Not caching schema " + pSchemaUrl + ", unable to track document " + systemId);
+                return null;
+            }
+            if (hash == null) {
+                getLog().debug("Not caching schema " + pSchemaUrl + ", unable to read document " + systemId);
+                return null;
+            }
+            result.put(systemId, hash);
+        }
+        return result;
+    }
+
+    /**
+     * Closes the streams of an input source, which hasn't been read, because the schema was found in the cache.
+     */
+    private void close(InputSource pInputSource) {
+        try {
+            if (pInputSource.getByteStream() != null) {
+                pInputSource.getByteStream().close();
+            }
+            if (pInputSource.getCharacterStream() != null) {
+                pInputSource.getCharacterStream().close();
+            }
+        } catch (IOException e) {
+            getLog().debug("Failed to close schema " + pInputSource.getSystemId() + ": " + e.getMessage());
         }
     }
 
     /**
      * Called for parsing or validating a single file.
      *
-     * @param pResolver      The resolver to use for loading external entities.
+     * @param pWorker        The worker, which provides the validator, if any, and the parser.
      * @param pValidationSet The parsers or validators configuration.
-     * @param pSchema        The schema to use.
      * @param pFile          The file to parse or validate.
      * @throws MojoExecutionException Parsing or validating the file failed.
      */
-    private void validate(
-            final Resolver pResolver,
-            ValidationSet pValidationSet,
-            Schema pSchema,
-            File pFile,
-            ValidationErrorHandler errorHandler)
+    private void validate(Worker pWorker, ValidationSet pValidationSet, File pFile, ValidationErrorHandler errorHandler)
             throws MojoExecutionException {
-        errorHandler.setContext(pFile);
         try {
-            if (pSchema == null) {
+            if (pWorker.validator == null) {
                 getLog().debug("Parsing " + pFile.getPath());
-                parse(pResolver, pValidationSet, pFile, errorHandler);
+                parse(pWorker.reader, pFile, errorHandler);
             } else {
                 getLog().debug("Validating " + pFile.getPath());
-                Validator validator = pSchema.newValidator();
+                final Validator validator = pWorker.validator;
                 validator.setErrorHandler(errorHandler);
-                if (pResolver != null) {
-                    validator.setResourceResolver(pResolver);
-                }
 
                 if (pValidationSet.isXincludeAware()) {
-                    SAXParserFactory spf = SAXParserFactory.newInstance();
-                    spf.setNamespaceAware(true);
-                    spf.setXIncludeAware(pValidationSet.isXincludeAware());
-
                     InputSource isource = new InputSource(pFile.toURI().toASCIIString());
-                    XMLReader xmlReader = spf.newSAXParser().getXMLReader();
-                    xmlReader.setEntityResolver(pResolver);
-
-                    validator.validate(new SAXSource(xmlReader, isource));
+                    validator.validate(new SAXSource(pWorker.reader, isource));
                 } else {
                     validator.validate(new StreamSource(pFile));
                 }
@@ -207,34 +395,74 @@ public class ValidateMojo extends AbstractXmlMojo {
     /**
      * Called for validating a single file.
      *
+     * @param pReader The parser to use, which has been configured for the validation set.
+     * @param pFile   The file to validate.
+     * @throws IOException  An I/O error occurred.
+     * @throws SAXException Parsing the file failed.
+     */
+    private void parse(XMLReader pReader, File pFile, ErrorHandler errorHandler) throws IOException, SAXException {
+        pReader.setErrorHandler(errorHandler);
+        pReader.parse(pFile.toURI().toURL().toExternalForm());
+    }
+
+    /**
+     * Creates a parser, which is configured for the given validation set, and reused for all of its files. If the
+     * validation set has a schema, then the parser is only required for XInclude processing.
+     *
      * @param pResolver      The resolver to use for loading external entities.
-     * @param pValidationSet The validators configuration.
-     * @param pFile          The file to validate.
-     * @throws IOException                  An I/O error occurred.
-     * @throws SAXException                 Parsing the file failed.
-     * @throws ParserConfigurationException Creating an XML parser failed.
+     * @param pValidationSet The validation set.
+     * @param pSchema        The validation sets schema, or null.
+     * @return The parser, or null, if none is required.
+     * @throws MojoExecutionException Creating the parser failed.
      */
-    private void parse(Resolver pResolver, ValidationSet pValidationSet, File pFile, ErrorHandler errorHandler)
-            throws IOException, SAXException, ParserConfigurationException {
-        XMLReader xr = newSAXParserFactory(pValidationSet).newSAXParser().getXMLReader();
-        if (pResolver != null) {
-            xr.setEntityResolver(pResolver);
+    private XMLReader newXMLReader(Resolver pResolver, ValidationSet pValidationSet, Schema pSchema)
+            throws MojoExecutionException {
+        final SAXParserFactory spf;
+        if (pSchema == null) {
+            spf = newSAXParserFactory(pValidationSet);
+        } else if (pValidationSet.isXincludeAware()) {
+            spf = SAXParserFactory.newInstance();
+            spf.setNamespaceAware(true);
+            spf.setXIncludeAware(pValidationSet.isXincludeAware());
+        } else {
+            return null;
+        }
+        try {
+            final XMLReader xr = spf.newSAXParser().getXMLReader();
+            if (pResolver != null) {
+                xr.setEntityResolver(pResolver);
+            }
+            return xr;
+        } catch (ParserConfigurationException e) {
+            throw new MojoExecutionException("Failed to create an XML parser: " + e.getMessage(), e);
+        } catch (SAXException e) {
+            throw new MojoExecutionException("Failed to create an XML parser: " + e.getMessage(), e);
         }
-        xr.setErrorHandler(errorHandler);
-        xr.parse(pFile.toURI().toURL().toExternalForm());
     }
 
     /**
      * Called for validating a set of XML files against a common schema.
      *
-     * @param pResolver      The resolver to use for loading external entities.
+     * @param pResolvers     The resolvers to use for loading external entities, one per thread. Resolvers are added,
+     *                       if the number of threads exceeds the number of resolvers.
      * @param pValidationSet The set of XML files to validate.
+     * @param pTiming        Receives the timing of every file, or null.
+     * @param pVerdictCache  The verdict cache, or null.
+     * @param pTaskRunner    The thread pool, which is used for validating the files concurrently.
      * @throws MojoExecutionException Validating the set of files failed.
      * @throws MojoFailureException   A configuration error was detected.
      */
-    private void validate(Resolver pResolver, ValidationSet pValidationSet, ValidationErrorHandler errorHandler)
+    private void validate(
+            List<Resolver> pResolvers,
+            final ValidationSet pValidationSet,
+            ValidationErrorHandler errorHandler,
+            final TimingReport.Group pTiming,
+            final VerdictCache pVerdictCache,
+            TaskRunner pTaskRunner)
             throws MojoExecutionException, MojoFailureException {
-        final Schema schema = getSchema(pResolver, pValidationSet);
+        final Map<String, String> schemaDocuments = pVerdictCache == null ? null : new LinkedHashMap<String, String>();
+        final Schema schema = getSchema(pResolvers.get(0), pValidationSet, schemaDocuments);
+        final String setKey = pVerdictCache == null ? null : getVerdictKey(pValidationSet, schemaDocuments);
         final File[] files = getFiles(
                 pValidationSet.getDir(),
                 pValidationSet.getIncludes(),
@@ -243,9 +471,130 @@ public class ValidateMojo extends AbstractXmlMojo {
             getLog().info("No matching files found for ValidationSet with public ID " + pValidationSet.getPublicId()
                     + ", system ID " + pValidationSet.getSystemId() + ".");
         }
-        for (int i = 0; i < files.length; i++) {
-            validate(pResolver, pValidationSet, schema, files[i], errorHandler);
+
+        // The compiled schema is thread safe, the validators, and resolvers, aren't.
+        final int numThreads = getThreads(pValidationSet, files.length);
+        final BlockingQueue<Worker> workers = new ArrayBlockingQueue<Worker>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            if (i == pResolvers.size()) {
+                pResolvers.add(getResolver());
+            }
+            final Resolver resolver = pResolvers.get(i);
+            resolver.setXincludeAware(pValidationSet.isValidating());
+            resolver.setValidating(pValidationSet.isValidating());
+            Validator validator = null;
+            if (schema != null) {
+                validator = schema.newValidator();
+                validator.setResourceResolver(resolver);
+            }
+            workers.add(new Worker(resolver, validator, newXMLReader(resolver, pValidationSet, schema)));
+        }
+
+        final List<TaskRunner.Task<ValidationErrorHandler>> tasks =
+                new ArrayList<TaskRunner.Task<ValidationErrorHandler>>(files.length);
+        for (final File file : files) {
+            tasks.add(new TaskRunner.Task<ValidationErrorHandler>() {
+                public ValidationErrorHandler call() throws MojoExecutionException {
+                    final ValidationErrorHandler fileErrorHandler = new ValidationErrorHandler(file);
+                    final long start = System.nanoTime();
+                    final String fileKey = setKey == null ? null : getVerdictKey(setKey, file);
+                    if (fileKey != null && pVerdictCache.load(fileKey, file, fileErrorHandler)) {
+                        getLog().debug("Skipping unchanged file " + file.getPath());
+                    } else {
+                        // Files, which reference other documents, are not cached.
+                        final List<String> dependencies = fileKey == null ? null : new ArrayList<String>();
+                        final Worker worker = workers.remove();
+                        try {
+                            worker.resolver.setRecorder(dependencies);
+                            validate(worker, pValidationSet, file, fileErrorHandler);
+                        } finally {
+                            worker.resolver.setRecorder(null);
+                            workers.add(worker);
+                        }
+                        if (fileKey != null
+                                && dependencies.isEmpty()
+                                && fileErrorHandler.getErrorCount() + fileErrorHandler.getFatalCount() == 0
+                                && (verdictCacheWarnings || fileErrorHandler.getWarningCount() == 0)) {
+                            pVerdictCache.store(fileKey, file, fileErrorHandler);
+                        }
+                    }
+                    if (pTiming != null) {
+                        pTiming.add(file, start, file.length(), 0);
+                    }
+                    return fileErrorHandler;
+                }
+            });
         }
+        // The errors are merged in the order of the files.
+        pTaskRunner.run(numThreads, tasks, new TaskRunner.Callback<ValidationErrorHandler>() {
+            public void done(ValidationErrorHandler pFileErrorHandler) {
+                errorHandler.addAll(pFileErrorHandler);
+            }
+        });
+    }
+
+    /**
+     * Returns the part of the verdict cache key, which is common to all files of a validation set. Only content
+     * hashes are used, and no locations, so that verdicts may be shared by multiple checkouts.
+     *
+     * @param pValidationSet  The validation set.
+     * @param pSchemaDocuments The schema documents, mapped to their content hashes.
+     * @return The key, or null, if verdicts of the validation set cannot be cached.
+     */
+    private String getVerdictKey(ValidationSet pValidationSet, Map<String, String> pSchemaDocuments) {
+        final String schemaLanguage = getSchemaLanguage(pValidationSet);
+        if (INTRINSIC_NS_URI.equals(schemaLanguage) || pValidationSet.isXincludeAware()) {
+            // The documents, which are used for validation, are unknown.
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append(schemaLanguage).append('\n');
+        sb.append(getCatalogConfiguration()).append('\n');
+        sb.append("validating:").append(pValidationSet.isValidating()).append('\n');
+        for (Map.Entry<String, String> document : pSchemaDocuments.entrySet()) {
+            if (document.getValue() == null) {
+                getLog().debug("Not caching verdicts, unable to track schema document " + document.getKey());
+                return null;
+            }
+            sb.append(document.getValue()).append('\n');
+        }
+        return ContentHash.of(sb.toString());
+    }
+
+    /**
+     * Returns the verdict cache key of a single file.
+     */
+    private String getVerdictKey(String pSetKey, File pFile) throws MojoExecutionException {
+        try {
+            return ContentHash.of(pSetKey + ":" + ContentHash.of(pFile));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read " + pFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the number of threads, which are used for validating the given number of files.
+     */
+    private int getThreads(ValidationSet pValidationSet, int pNumFiles) throws MojoFailureException {
+        int result = pValidationSet.getThreads();
+        if (result == 0) {
+            result = threads;
+        }
+        if (result < 1) {
+            throw new MojoFailureException("The number of threads must be a positive number, got " + result);
+        }
+        return Math.max(1, Math.min(result, pNumFiles));
+    }
+
+    /**
+     * Returns the size of the thread pool, which is shared by the validation sets.
+     */
+    private int getPoolSize() {
+        int result = threads;
+        for (ValidationSet validationSet : validationSets) {
+            result = Math.max(result, validationSet.getThreads());
+        }
+        return result;
     }
 
     /**
@@ -266,14 +615,23 @@ public class ValidateMojo extends AbstractXmlMojo {
         }
         checkCatalogHandling();
 
+        final TimingReport timingReport = newTimingReport("validate");
+        final VerdictCache verdictCache = verdictCacheDirectory == null
+                ? null
+                : new VerdictCache(asAbsoluteFile(verdictCacheDirectory), verdictCacheSize, getLog());
+        final TaskRunner taskRunner = new TaskRunner(getPoolSize());
         Object oldProxySettings = activateProxy();
         try {
-            Resolver resolver = getResolver();
+            final List<Resolver> resolvers = new ArrayList<Resolver>();
+            resolvers.add(getResolver());
             for (int i = 0; i < validationSets.length; i++) {
                 ValidationSet validationSet = validationSets[i];
-                resolver.setXincludeAware(validationSet.isValidating());
-                resolver.setValidating(validationSet.isValidating());
-                validate(resolver, validationSet, errorHandler);
+                resolvers.get(0).setXincludeAware(validationSet.isValidating());
+                resolvers.get(0).setValidating(validationSet.isValidating());
+                final TimingReport.Group timing = timingReport == null
+                        ? null
+                        : timingReport.newGroup("validation set #" + (i + 1), validationSet.getDir());
+                validate(resolvers, validationSet, errorHandler, timing, verdictCache, taskRunner);
             }
             List<ValidationErrorHandler.ErrorRecord> errorRecords = errorHandler.getErrors();
             if (!errorRecords.isEmpty()) {
@@ -288,7 +646,13 @@ public class ValidateMojo extends AbstractXmlMojo {
                 }
             }
         } finally {
+            taskRunner.close();
             passivateProxy(oldProxySettings);
+            finishTimingReport(timingReport);
+            if (verdictCache != null) {
+                getLog().debug("Verdict cache: " + verdictCache.getStatistics());
+                verdictCache.evict();
+            }
         }
     }
 
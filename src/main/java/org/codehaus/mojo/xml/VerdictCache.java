@@ -0,0 +1,244 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.xml.validation.ValidationErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A directory with the verdicts of previous validations. An entry records, that a file with a given content hash
+ * has been found valid by a validation set with a given configuration, and schema, along with the warnings, which
+ * have been reported. Entries are keyed by content hashes only, so the directory may be shared by multiple
+ * checkouts, or CI workspaces. The number of entries is limited, least recently used entries are evicted first.
+ */
+class VerdictCache {
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".verdict";
+
+    private final File dir;
+
+    private final int maxSize;
+
+    private final Log log;
+
+    private final AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger(), stores = new AtomicInteger();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pDir     The cache directory.
+     * @param pMaxSize The maximum number of entries.
+     * @param pLog     The logger.
+     */
+    VerdictCache(File pDir, int pMaxSize, Log pLog) {
+        dir = pDir;
+        maxSize = pMaxSize;
+        log = pLog;
+    }
+
+    private File getFile(String pKey) {
+        return new File(dir, pKey + SUFFIX);
+    }
+
+    /**
+     * Looks up the verdict with the given key. If the verdict is found, then the recorded warnings are reported to
+     * the given error handler.
+     *
+     * @param pKey          The cache key.
+     * @param pFile         The file, which is being validated.
+     * @param pErrorHandler The error handler, which receives the recorded warnings.
+     * @return True, if the file is known to be valid, and needn't be validated. Otherwise false.
+     */
+    boolean load(String pKey, File pFile, ValidationErrorHandler pErrorHandler) {
+        final File file = getFile(pKey);
+        final Properties props = new Properties();
+        final List<SAXParseException> warnings = new ArrayList<SAXParseException>();
+        try {
+            final InputStream stream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                props.load(stream);
+            } finally {
+                stream.close();
+            }
+            if (!String.valueOf(VERSION).equals(props.getProperty("version"))) {
+                misses.incrementAndGet();
+                return false;
+            }
+            final int numWarnings = Integer.parseInt(props.getProperty("warnings"));
+            for (int i = 0; i < numWarnings; i++) {
+                final String prefix = "warning." + i + ".";
+                String systemId = props.getProperty(prefix + "systemId");
+                if ("".equals(systemId)) {
+                    systemId = pFile.toURI().toString();
+                }
+                warnings.add(new SAXParseException(
+                        props.getProperty(prefix + "message"),
+                        props.getProperty(prefix + "publicId"),
+                        systemId,
+                        Integer.parseInt(props.getProperty(prefix + "line")),
+                        Integer.parseInt(props.getProperty(prefix + "column"))));
+            }
+        } catch (FileNotFoundException e) {
+            misses.incrementAndGet();
+            return false;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable verdict " + file + ": " + e.getMessage());
+            misses.incrementAndGet();
+            return false;
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring corrupt verdict " + file + ": " + e.getMessage());
+            misses.incrementAndGet();
+            return false;
+        }
+        try {
+            for (SAXParseException warning : warnings) {
+                pErrorHandler.warning(warning);
+            }
+        } catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+        // Mark the entry as recently used.
+        file.setLastModified(System.currentTimeMillis());
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores the verdict for a valid file. Failures are logged, but otherwise ignored.
+     *
+     * @param pKey          The cache key.
+     * @param pFile         The file, which has been validated.
+     * @param pErrorHandler The error handler, which has collected the files warnings.
+     */
+    void store(String pKey, File pFile, ValidationErrorHandler pErrorHandler) {
+        final Properties props = new Properties();
+        props.setProperty("version", String.valueOf(VERSION));
+        int numWarnings = 0;
+        for (ValidationErrorHandler.ErrorRecord record : pErrorHandler.getErrors()) {
+            if (!record.isWarning()) {
+                continue;
+            }
+            final SAXParseException e = record.getException();
+            final String prefix = "warning." + numWarnings++ + ".";
+            if (e.getMessage() != null) {
+                props.setProperty(prefix + "message", e.getMessage());
+            }
+            if (e.getPublicId() != null) {
+                props.setProperty(prefix + "publicId", e.getPublicId());
+            }
+            if (e.getSystemId() != null) {
+                // The files location is replaced, so that the entry may be used by other checkouts.
+                props.setProperty(prefix + "systemId", isFile(e.getSystemId(), pFile) ? "" : e.getSystemId());
+            }
+            props.setProperty(prefix + "line", String.valueOf(e.getLineNumber()));
+            props.setProperty(prefix + "column", String.valueOf(e.getColumnNumber()));
+        }
+        props.setProperty("warnings", String.valueOf(numWarnings));
+
+        final File file = getFile(pKey);
+        File tmpFile = null;
+        try {
+            tmpFile = AtomicFiles.newTempFile(file);
+            final OutputStream stream = new FileOutputStream(tmpFile);
+            try {
+                props.store(stream, null);
+            } finally {
+                stream.close();
+            }
+            AtomicFiles.publish(tmpFile, file);
+            tmpFile = null;
+            stores.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("Failed to store verdict " + file + ": " + e.getMessage());
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static boolean isFile(String pSystemId, File pFile) {
+        try {
+            return new File(new URI(pSystemId)).getAbsoluteFile().equals(pFile.getAbsoluteFile());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries, if verdicts have been stored, and the maximum number of entries is
+     * exceeded.
+     */
+    void evict() {
+        if (stores.get() == 0) {
+            return;
+        }
+        final File[] files = dir.listFiles(new FilenameFilter() {
+            public boolean accept(File pDir, String pName) {
+                return pName.endsWith(SUFFIX);
+            }
+        });
+        if (files == null || files.length <= maxSize) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        final Integer[] indexes = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            indexes[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            public int compare(Integer pIndex1, Integer pIndex2) {
+                return Long.compare(lastModified[pIndex1.intValue()], lastModified[pIndex2.intValue()]);
+            }
+        });
+        for (int i = 0; i < files.length - maxSize; i++) {
+            files[indexes[i].intValue()].delete();
+        }
+        log.debug("Evicted " + (files.length - maxSize) + " verdicts from " + dir);
+    }
+
+    /**
+     * Returns a textual representation of the caches statistics, suitable for logging.
+     */
+    String getStatistics() {
+        return "hits=" + hits.get() + ", misses=" + misses.get() + ", stores=" + stores.get();
+    }
+}
@@ -0,0 +1,89 @@
+package org.codehaus.mojo.xml.transformer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.components.io.filemappers.FileMapper;
+
+/**
+ * An instance of this class is used to specify one of multiple parameter combinations, which are applied to the
+ * input files of a {@link TransformationSet}. Every input file is parsed only once, and then transformed once for
+ * every parameter set (and every target), possibly concurrently.
+ */
+public class ParameterSet {
+    private NameValuePair[] parameters;
+
+    private File outputDir;
+
+    private FileMapper[] fileMappers;
+
+    /**
+     * Returns the stylesheet parameters. These are applied in addition to the transformation sets, or targets,
+     * parameters.
+     * @return Stylesheet parameters
+     */
+    public NameValuePair[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the stylesheet parameters. These are applied in addition to the transformation sets, or targets,
+     * parameters.
+     * @param pParameters Stylesheet parameters
+     */
+    public void setParameters(NameValuePair[] pParameters) {
+        parameters = pParameters;
+    }
+
+    /**
+     * Returns the output directory. Defaults to the targets, or transformation sets, output directory.
+     * @return The output directory, or null for the targets, or transformation sets, output directory.
+     */
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * Sets the output directory. Defaults to the targets, or transformation sets, output directory.
+     * @param pOutputDir The output directory, or null for the targets, or transformation sets, output directory.
+     */
+    public void setOutputDir(File pOutputDir) {
+        outputDir = pOutputDir;
+    }
+
+    /**
+     * Returns a set of file mappers, which are being used to convert the generated files name, for example by
+     * adding a suffix. These are applied after the targets, or transformation sets, file mappers.
+     * @return The set of file mappers to use, or null.
+     */
+    public FileMapper[] getFileMappers() {
+        return fileMappers;
+    }
+
+    /**
+     * Sets a set of file mappers, which are being used to convert the generated files name, for example by adding
+     * a suffix. These are applied after the targets, or transformation sets, file mappers.
+     * @param pFileMappers The set of file mappers to use, or null.
+     */
+    public void setFileMappers(FileMapper[] pFileMappers) {
+        fileMappers = pFileMappers;
+    }
+}
@@ -0,0 +1,77 @@
+package org.codehaus.mojo.xml.transformer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * An instance of this class specifies the parts of the input files of a {@link TransformationSet}, which are passed
+ * to the stylesheets. Other parts are removed by a SAX filter, before the transformer builds its tree. This reduces
+ * the memory, and time, required by stylesheets, which read only a few elements of large input files.
+ * <p>
+ * Paths are sequences of element names, separated by "/". An element name is a local name, which matches elements
+ * in any namespace, a name in Clark notation, like "{http://namespace}localName", or "*". A path, which starts
+ * with a single "/", matches from the root element, otherwise, or if it starts with "//", it matches at any depth.
+ * The root element is always retained, even if it is dropped, or nothing is kept, so that the stylesheets receive a
+ * well formed document.
+ */
+public class Projection {
+    private String[] keep;
+
+    private String[] drop;
+
+    /**
+     * Returns the paths of the elements, which are kept, including their content. The ancestors of these elements
+     * are kept as well, with their attributes, but without their text. Other elements, including those, which
+     * might have contained kept elements, are removed. If no paths are given, then all elements
+     * are kept, which aren't dropped.
+     * @return The paths of the elements, which are kept, or null.
+     */
+    public String[] getKeep() {
+        return keep;
+    }
+
+    /**
+     * Sets the paths of the elements, which are kept, including their content. The ancestors of these elements
+     * are kept as well, with their attributes, but without their text. Other elements, including those, which
+     * might have contained kept elements, are removed. If no paths are given, then all elements
+     * are kept, which aren't dropped.
+     * @param pKeep The paths of the elements, which are kept.
+     */
+    public void setKeep(String[] pKeep) {
+        keep = pKeep;
+    }
+
+    /**
+     * Returns the paths of the elements, which are removed, including their content. Dropping takes precedence
+     * over keeping.
+     * @return The paths of the elements, which are removed, or null.
+     */
+    public String[] getDrop() {
+        return drop;
+    }
+
+    /**
+     * Sets the paths of the elements, which are removed, including their content. Dropping takes precedence
+     * over keeping.
+     * @param pDrop The paths of the elements, which are removed.
+     */
+    public void setDrop(String[] pDrop) {
+        drop = pDrop;
+    }
+}
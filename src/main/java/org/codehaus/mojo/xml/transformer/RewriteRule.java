@@ -0,0 +1,138 @@
+package org.codehaus.mojo.xml.transformer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * An instance of this class specifies a simple rewrite rule, which is applied to the elements of the input files of
+ * a {@link TransformationSet}. Rewrite rules are an alternative to stylesheets, which doesn't require to build a
+ * tree of the input file: They are applied by a SAX filter, in constant memory.
+ * <p>
+ * The following actions are supported:
+ * <dl>
+ *   <dt>rename</dt><dd>Changes the local name of the matching elements to {@link #getName()}. The namespace is
+ *     retained.</dd>
+ *   <dt>drop</dt><dd>Removes the matching elements, including their content.</dd>
+ *   <dt>setAttribute</dt><dd>Sets the attribute {@link #getName()} of the matching elements to
+ *     {@link #getValue()}.</dd>
+ *   <dt>replaceText</dt><dd>Replaces the regular expression {@link #getPattern()} with {@link #getValue()} in
+ *     the text, which is directly contained by the matching elements.</dd>
+ *   <dt>stripNamespace</dt><dd>Removes the namespace of the matching elements, and of their prefixed attributes,
+ *     except for attributes in the XML namespace, like xml:lang.</dd>
+ * </dl>
+ */
+public class RewriteRule {
+    private String action;
+
+    private String match;
+
+    private String name;
+
+    private String value;
+
+    private String pattern;
+
+    /**
+     * Returns the action, which is applied to the matching elements: One of "rename", "drop", "setAttribute",
+     * "replaceText", or "stripNamespace".
+     * @return The action.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Sets the action, which is applied to the matching elements: One of "rename", "drop", "setAttribute",
+     * "replaceText", or "stripNamespace".
+     * @param pAction The action.
+     */
+    public void setAction(String pAction) {
+        action = pAction;
+    }
+
+    /**
+     * Returns the name of the matching elements: Either a local name, which matches elements in any namespace, a
+     * name in Clark notation, like "{http://namespace}localName", or "*". The local name may as well be "*", as in
+     * "{http://namespace}*".
+     * @return The name of the matching elements.
+     */
+    public String getMatch() {
+        return match;
+    }
+
+    /**
+     * Sets the name of the matching elements: Either a local name, which matches elements in any namespace, a
+     * name in Clark notation, like "{http://namespace}localName", or "*". The local name may as well be "*", as in
+     * "{http://namespace}*".
+     * @param pMatch The name of the matching elements.
+     */
+    public void setMatch(String pMatch) {
+        match = pMatch;
+    }
+
+    /**
+     * Returns the new local name (action "rename"), or the attribute name (action "setAttribute").
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the new local name (action "rename"), or the attribute name (action "setAttribute").
+     * @param pName The name.
+     */
+    public void setName(String pName) {
+        name = pName;
+    }
+
+    /**
+     * Returns the attribute value (action "setAttribute"), or the replacement (action "replaceText"). The
+     * replacement may refer to groups of the pattern, as in "$1".
+     * @return The value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the attribute value (action "setAttribute"), or the replacement (action "replaceText"). The
+     * replacement may refer to groups of the pattern, as in "$1".
+     * @param pValue The value.
+     */
+    public void setValue(String pValue) {
+        value = pValue;
+    }
+
+    /**
+     * Returns the regular expression, which is being replaced (action "replaceText").
+     * @return The regular expression.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Sets the regular expression, which is being replaced (action "replaceText").
+     * @param pPattern The regular expression.
+     */
+    public void setPattern(String pPattern) {
+        pattern = pPattern;
+    }
+}
@@ -57,6 +57,26 @@ public class TransformationSet {
 
     private boolean xincludeAware;
 
+    private int threads;
+
+    private String[] stylesheets;
+
+    private TransformationTarget[] targets;
+
+    private String id;
+
+    private String[] dependsOn;
+
+    private boolean transientOutput;
+
+    private String aggregateOutput;
+
+    private ParameterSet[] parameterSets;
+
+    private RewriteRule[] rules;
+
+    private Projection projection;
+
     /**
      * Sets patterns of files, which are being excluded from the transformation set.
      * @param pExcludes Patterns of files, which are being excluded.
@@ -307,4 +327,192 @@ public class TransformationSet {
     public void setXincludeAware(boolean pXIncludeAware) {
         xincludeAware = pXIncludeAware;
     }
+
+    /**
+     * Returns the number of threads, which are used for transforming the files of this set. The default value of 0
+     * means, that the transform goals "threads" property applies.
+     * @return The number of threads, or 0 for the goals default.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads, which are used for transforming the files of this set. The default value of 0
+     * means, that the transform goals "threads" property applies.
+     * @param pThreads The number of threads, or 0 for the goals default.
+     */
+    public void setThreads(int pThreads) {
+        threads = pThreads;
+    }
+
+    /**
+     * Returns the XSLT stylesheets of a pipeline. The input files are transformed by the first stylesheet, the
+     * result is transformed by the second stylesheet, and so on. Intermediate results are passed as SAX events,
+     * without being written to disk. This is an alternative to {@link #getStylesheet()}.
+     * @return The XSLT stylesheets, in the order of their application, or null.
+     */
+    public String[] getStylesheets() {
+        return stylesheets;
+    }
+
+    /**
+     * Sets the XSLT stylesheets of a pipeline. The input files are transformed by the first stylesheet, the
+     * result is transformed by the second stylesheet, and so on. Intermediate results are passed as SAX events,
+     * without being written to disk. This is an alternative to {@link #setStylesheet(String)}.
+     * @param pStylesheets The XSLT stylesheets, in the order of their application.
+     */
+    public void setStylesheets(String[] pStylesheets) {
+        stylesheets = pStylesheets;
+    }
+
+    /**
+     * Returns the targets of this set. If targets are configured, then every input file is parsed only once, and
+     * transformed by the stylesheets of all targets. This is an alternative to {@link #getStylesheet()}.
+     * @return The targets, or null.
+     */
+    public TransformationTarget[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Sets the targets of this set. If targets are configured, then every input file is parsed only once, and
+     * transformed by the stylesheets of all targets. This is an alternative to {@link #setStylesheet(String)}.
+     * @param pTargets The targets.
+     */
+    public void setTargets(TransformationTarget[] pTargets) {
+        targets = pTargets;
+    }
+
+    /**
+     * Returns the ID of this set, which may be referenced by the {@link #getDependsOn()} property of other sets.
+     * @return The ID, or null.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of this set, which may be referenced by the {@link #setDependsOn(String[])} property of other
+     * sets.
+     * @param pId The ID, or null.
+     */
+    public void setId(String pId) {
+        id = pId;
+    }
+
+    /**
+     * Returns the ID's of the sets, which must be transformed before this set. This is required only, if the
+     * dependency cannot be inferred from the sets directories, for example, if a stylesheet loads another sets
+     * output by using the document() function.
+     * @return The ID's of the sets, on which this set depends, or null.
+     */
+    public String[] getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * Sets the ID's of the sets, which must be transformed before this set. This is required only, if the
+     * dependency cannot be inferred from the sets directories, for example, if a stylesheet loads another sets
+     * output by using the document() function.
+     * @param pDependsOn The ID's of the sets, on which this set depends, or null.
+     */
+    public void setDependsOn(String[] pDependsOn) {
+        dependsOn = pDependsOn;
+    }
+
+    /**
+     * Returns, whether this sets output is transient. Transient output files aren't written to disk. Instead, the
+     * result trees are passed in memory to subsequent sets, which read from this sets output directory.
+     * @return True, if this sets output is transient.
+     */
+    public boolean isTransientOutput() {
+        return transientOutput;
+    }
+
+    /**
+     * Sets, whether this sets output is transient. Transient output files aren't written to disk. Instead, the
+     * result trees are passed in memory to subsequent sets, which read from this sets output directory.
+     * @param pTransientOutput True, if this sets output is transient.
+     */
+    public void setTransientOutput(boolean pTransientOutput) {
+        transientOutput = pTransientOutput;
+    }
+
+    /**
+     * Returns the name of a single output file, which is created by applying the stylesheet once to a generated
+     * document, which lists all input files. The stylesheet loads the input files on demand, by invoking the
+     * document() function. Loaded input files are kept in memory until the end of the transformation, so the memory
+     * requirement is proportional to the total size of the input files. Aggregate outputs don't support the
+     * dependency manifest.
+     * @return The output file name, relative to the output directory, or null for one output file per input file.
+     */
+    public String getAggregateOutput() {
+        return aggregateOutput;
+    }
+
+    /**
+     * Sets the name of a single output file, which is created by applying the stylesheet once to a generated
+     * document, which lists all input files. The stylesheet loads the input files on demand, by invoking the
+     * document() function. Loaded input files are kept in memory until the end of the transformation, so the memory
+     * requirement is proportional to the total size of the input files. Aggregate outputs don't support the
+     * dependency manifest.
+     * @param pAggregateOutput The output file name, relative to the output directory, or null for one output file
+     *     per input file.
+     */
+    public void setAggregateOutput(String pAggregateOutput) {
+        aggregateOutput = pAggregateOutput;
+    }
+
+    /**
+     * Returns the parameter sets of this set. If parameter sets are configured, then every input file is parsed
+     * only once, and transformed once for every parameter set, and target.
+     * @return The parameter sets, or null.
+     */
+    public ParameterSet[] getParameterSets() {
+        return parameterSets;
+    }
+
+    /**
+     * Sets the parameter sets of this set. If parameter sets are configured, then every input file is parsed
+     * only once, and transformed once for every parameter set, and target.
+     * @param pParameterSets The parameter sets.
+     */
+    public void setParameterSets(ParameterSet[] pParameterSets) {
+        parameterSets = pParameterSets;
+    }
+
+    /**
+     * Returns the rewrite rules of this set. Rewrite rules are applied to the input files in constant memory, before
+     * the stylesheets, if any. A set, which has rules, doesn't require a stylesheet.
+     * @return The rewrite rules, in the order of their application, or null.
+     */
+    public RewriteRule[] getRules() {
+        return rules;
+    }
+
+    /**
+     * Sets the rewrite rules of this set. Rewrite rules are applied to the input files in constant memory, before
+     * the stylesheets, if any. A set, which has rules, doesn't require a stylesheet.
+     * @param pRules The rewrite rules, in the order of their application.
+     */
+    public void setRules(RewriteRule[] pRules) {
+        rules = pRules;
+    }
+
+    /**
+     * Returns the projection, which specifies the parts of the input files, that are passed to the stylesheets.
+     * @return The projection, or null, if the input files are passed completely.
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Sets the projection, which specifies the parts of the input files, that are passed to the stylesheets.
+     * @param pProjection The projection, or null, if the input files are passed completely.
+     */
+    public void setProjection(Projection pProjection) {
+        projection = pProjection;
+    }
 }
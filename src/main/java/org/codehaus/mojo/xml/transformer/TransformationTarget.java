@@ -0,0 +1,142 @@
+package org.codehaus.mojo.xml.transformer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.components.io.filemappers.FileMapper;
+
+/**
+ * An instance of this class is used to specify one of multiple outputs of a {@link TransformationSet}. Every input
+ * file of the set is parsed only once, and then transformed by the stylesheets of all targets.
+ */
+public class TransformationTarget {
+    private String stylesheet;
+
+    private String[] stylesheets;
+
+    private File outputDir;
+
+    private FileMapper[] fileMappers;
+
+    private NameValuePair[] parameters;
+
+    private NameValuePair[] outputProperties;
+
+    /**
+     * Returns the XSLT stylesheet, which is being used to create this targets output.
+     * @return The XSLT stylesheet to read.
+     */
+    public String getStylesheet() {
+        return stylesheet;
+    }
+
+    /**
+     * Sets the XSLT stylesheet, which is being used to create this targets output.
+     * @param pStylesheet The XSLT stylesheet to read.
+     */
+    public void setStylesheet(String pStylesheet) {
+        stylesheet = pStylesheet;
+    }
+
+    /**
+     * Returns the XSLT stylesheets of a pipeline, which is being used to create this targets output. This is an
+     * alternative to {@link #getStylesheet()}.
+     * @return The XSLT stylesheets, in the order of their application, or null.
+     */
+    public String[] getStylesheets() {
+        return stylesheets;
+    }
+
+    /**
+     * Sets the XSLT stylesheets of a pipeline, which is being used to create this targets output. This is an
+     * alternative to {@link #setStylesheet(String)}.
+     * @param pStylesheets The XSLT stylesheets, in the order of their application.
+     */
+    public void setStylesheets(String[] pStylesheets) {
+        stylesheets = pStylesheets;
+    }
+
+    /**
+     * Returns the output directory. Defaults to the transformation sets output directory.
+     * @return The output directory, or null for the transformation sets output directory.
+     */
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * Sets the output directory. Defaults to the transformation sets output directory.
+     * @param pOutputDir The output directory, or null for the transformation sets output directory.
+     */
+    public void setOutputDir(File pOutputDir) {
+        outputDir = pOutputDir;
+    }
+
+    /**
+     * Returns a set of file mappers, which are being used to convert the generated files name. Defaults to the
+     * transformation sets file mappers.
+     * @return The set of file mappers to use, or null for the transformation sets file mappers.
+     */
+    public FileMapper[] getFileMappers() {
+        return fileMappers;
+    }
+
+    /**
+     * Sets a set of file mappers, which are being used to convert the generated files name. Defaults to the
+     * transformation sets file mappers.
+     * @param pFileMappers The set of file mappers to use, or null for the transformation sets file mappers.
+     */
+    public void setFileMappers(FileMapper[] pFileMappers) {
+        fileMappers = pFileMappers;
+    }
+
+    /**
+     * Returns the stylesheet parameters. These are applied in addition to the transformation sets parameters.
+     * @return Stylesheet parameters
+     */
+    public NameValuePair[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the stylesheet parameters. These are applied in addition to the transformation sets parameters.
+     * @param pParameters Stylesheet parameters
+     */
+    public void setParameters(NameValuePair[] pParameters) {
+        parameters = pParameters;
+    }
+
+    /**
+     * Returns the output properties. These are applied in addition to the transformation sets output properties.
+     * @return The output properties.
+     */
+    public NameValuePair[] getOutputProperties() {
+        return outputProperties;
+    }
+
+    /**
+     * Sets the output properties. These are applied in addition to the transformation sets output properties.
+     * @param pOutputProperties The output properties.
+     */
+    public void setOutputProperties(NameValuePair[] pOutputProperties) {
+        outputProperties = pOutputProperties;
+    }
+}
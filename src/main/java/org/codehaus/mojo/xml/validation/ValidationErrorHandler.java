@@ -25,6 +25,10 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 /**
+ * Collects the warnings, and errors, which are reported while validating files. Instances are safe for use by
+ * multiple threads. However, the context of a shared instance applies to all threads, so concurrent validations
+ * should use an instance per file, which is created by {@link #ValidationErrorHandler(File)}, and merged by
+ * {@link #addAll(ValidationErrorHandler)}.
  *
  * @author rlamont
  */
@@ -36,20 +40,46 @@ public class ValidationErrorHandler implements ErrorHandler {
     private int fatalCount = 0;
     private File context;
 
+    /**
+     * Creates a new instance without context.
+     */
+    public ValidationErrorHandler() {}
+
+    /**
+     * Creates a new instance, which collects the warnings, and errors of a single file.
+     * @param context The file, which is being validated.
+     */
+    public ValidationErrorHandler(File context) {
+        this.context = context;
+    }
+
+    /**
+     * Adds the warnings, and errors, which have been collected by the given handler.
+     * @param handler The handler, which has collected the warnings, and errors, of a single file.
+     */
+    public synchronized void addAll(ValidationErrorHandler handler) {
+        synchronized (handler) {
+            errors.addAll(handler.errors);
+            warningCount += handler.warningCount;
+            errorCount += handler.errorCount;
+            fatalCount += handler.fatalCount;
+        }
+    }
+
     @Override
-    public void warning(SAXParseException exception) throws SAXException {
+    public synchronized void warning(SAXParseException exception) throws SAXException {
         warningCount++;
         errors.add(new ErrorRecord(ErrorType.WARNING, exception, context));
     }
 
     @Override
-    public void error(SAXParseException exception) throws SAXException {
+    public synchronized void error(SAXParseException exception) throws SAXException {
         errorCount++;
         errors.add(new ErrorRecord(ErrorType.ERROR, exception, context));
     }
 
     @Override
-    public void fatalError(SAXParseException exception) throws SAXException {
+    public synchronized void fatalError(SAXParseException exception) throws SAXException {
         fatalCount++;
         errors.add(new ErrorRecord(ErrorType.FATAL, exception, context));
     }
@@ -58,19 +88,19 @@ public class ValidationErrorHandler implements ErrorHandler {
         return publicErrors;
     }
 
-    public int getWarningCount() {
+    public synchronized int getWarningCount() {
         return warningCount;
     }
 
-    public int getErrorCount() {
+    public synchronized int getErrorCount() {
         return errorCount;
     }
 
-    public int getFatalCount() {
+    public synchronized int getFatalCount() {
         return fatalCount;
     }
 
-    public void setContext(File context) {
+    public synchronized void setContext(File context) {
         this.context = context;
     }
 
@@ -43,6 +43,8 @@ public class ValidationSet {
 
     private boolean xincludeAware;
 
+    private int threads;
+
     /**
      * Returns a directory, which is scanned for files to validate.
      * @return The directory to scan.
@@ -201,4 +203,22 @@ public class ValidationSet {
     public void setXincludeAware(boolean pXIncludeAware) {
         xincludeAware = pXIncludeAware;
     }
+
+    /**
+     * Returns the number of threads, which are used for validating the files of this set. The default value of 0
+     * means, that the validate goals "threads" property applies.
+     * @return The number of threads, or 0 for the goals default.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads, which are used for validating the files of this set. The default value of 0
+     * means, that the validate goals "threads" property applies.
+     * @param pThreads The number of threads, or 0 for the goals default.
+     */
+    public void setThreads(int pThreads) {
+        threads = pThreads;
+    }
 }
@@ -0,0 +1,6 @@
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
+  <xsl:template match="/">
+    <result elements="{count(//*)}" ids="{concat(/catalog/item[1]/@id, /catalog/item[2]/@id)}"
+        text="{normalize-space(/)}" comments="{count(//comment())}"/>
+  </xsl:template>
+</xsl:stylesheet>
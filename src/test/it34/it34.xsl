@@ -0,0 +1,23 @@
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
+  <xsl:template match="/">
+    <result>
+      <xsl:apply-templates select="doc/item"/>
+      <xsl:apply-templates select="doc/item" mode="toc"/>
+    </result>
+  </xsl:template>
+
+  <xsl:template match="item">
+    <xsl:call-template name="format">
+      <xsl:with-param name="value" select="."/>
+    </xsl:call-template>
+  </xsl:template>
+
+  <xsl:template match="item" mode="toc">
+    <toc><xsl:value-of select="@id"/></toc>
+  </xsl:template>
+
+  <xsl:template name="format">
+    <xsl:param name="value"/>
+    <item><xsl:value-of select="$value"/></item>
+  </xsl:template>
+</xsl:stylesheet>
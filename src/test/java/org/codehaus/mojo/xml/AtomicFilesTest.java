@@ -0,0 +1,49 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AtomicFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShortNames() throws Exception {
+        for (String name : new String[] {"a", "ab", "abc.xml"}) {
+            final File target = new File(folder.getRoot(), "out/" + name);
+            final File tmpFile = AtomicFiles.newTempFile(target);
+            assertTrue(tmpFile.getName(), tmpFile.getName().startsWith("." + name + "-"));
+            FileUtils.fileWrite(tmpFile, "UTF-8", name);
+            AtomicFiles.publish(tmpFile, target);
+            assertFalse(tmpFile.exists());
+            assertEquals(name, FileUtils.fileRead(target, "UTF-8"));
+        }
+    }
+}
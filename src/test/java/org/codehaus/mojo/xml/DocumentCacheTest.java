@@ -0,0 +1,46 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+
+public class DocumentCacheTest {
+    @Test
+    public void testGetSize() throws Exception {
+        final Document doc = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder()
+                .parse(new ByteArrayInputStream("<a x='12'><b>abc</b><c/></a>".getBytes("UTF-8")));
+        // Nodes: The document, a, x, b, "abc", and c, with the names "#document", "a", "x", "b", "#text", "c", and
+        // the values "12", and "abc".
+        final long chars = 9 + 1 + 1 + 1 + 5 + 1 + 2 + 3;
+        assertEquals(6 * 64 + 2 * chars, DocumentCache.getSize(doc));
+        // A subtree is measured without its siblings.
+        assertEquals(
+                2 * 64 + 2 * (1 + 5 + 3),
+                DocumentCache.getSize(doc.getDocumentElement().getFirstChild()));
+    }
+}
@@ -0,0 +1,116 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentTemplatesCacheTest {
+    private static final String STYLESHEET = "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+            + " version='1.0'><xsl:template match='/'><a/></xsl:template></xsl:stylesheet>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class RecordingLog extends SystemStreamLog {
+        private final List<String> infos = new ArrayList<String>();
+
+        @Override
+        public void info(CharSequence pContent) {
+            infos.add(pContent.toString());
+            super.info(pContent);
+        }
+    }
+
+    private static Templates newTemplates(TransformerFactory pFactory) throws Exception {
+        return pFactory.newTemplates(new StreamSource(new StringReader(STYLESHEET)));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        final TransformerFactory tf = TransformerFactory.newInstance();
+        final File dir = folder.newFolder("cache");
+        final File keyFile = new File(folder.getRoot(), "keys/templates-cache.key");
+        final PersistentTemplatesCache cache = new PersistentTemplatesCache(dir, keyFile, new SystemStreamLog());
+        final File module = folder.newFile("stylesheet.xsl");
+        Files.write(module.toPath(), STYLESHEET.getBytes("UTF-8"));
+        final String url = module.toURI().toURL().toExternalForm();
+        final Map<String, String> modules = Collections.singletonMap(url, ContentHash.of(new URL(url)));
+        cache.store("key", newTemplates(tf), modules);
+        assertTrue(keyFile.isFile());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(keyFile.toPath())));
+            assertEquals(
+                    "rwx------",
+                    PosixFilePermissions.toString(Files.getPosixFilePermissions(
+                            keyFile.getParentFile().toPath())));
+        }
+        final Map<String, String> loadedModules = new HashMap<String, String>();
+        assertNotNull(cache.load("key", tf.getClass(), loadedModules));
+        assertEquals(modules, loadedModules);
+
+        // Another key invalidates the entry
+        final PersistentTemplatesCache otherCache = new PersistentTemplatesCache(
+                dir, new File(folder.getRoot(), "otherKeys/templates-cache.key"), new SystemStreamLog());
+        assertNull(otherCache.load("key", tf.getClass(), new HashMap<String, String>()));
+    }
+
+    @Test
+    public void testUnusableKeyFile() throws Exception {
+        final TransformerFactory tf = TransformerFactory.newInstance();
+        final File dir = folder.newFolder("cache");
+        // The key files parent is a regular file, so the key cannot be created.
+        final File keyFile = new File(folder.newFile("notADirectory"), "templates-cache.key");
+        final RecordingLog log = new RecordingLog();
+        final PersistentTemplatesCache cache = new PersistentTemplatesCache(dir, keyFile, log);
+        final Map<String, String> modules = Collections.emptyMap();
+        cache.store("key1", newTemplates(tf), modules);
+        cache.store("key2", newTemplates(tf), modules);
+        assertNull(cache.load("key1", tf.getClass(), new HashMap<String, String>()));
+        assertEquals(log.infos.toString(), 1, log.infos.size());
+        assertTrue(log.infos.get(0), log.infos.get(0).startsWith("The persistent templates cache is disabled"));
+        assertFalse(new File(dir, "key1.templates").exists());
+        assertFalse(new File(dir, "key2.templates").exists());
+    }
+}
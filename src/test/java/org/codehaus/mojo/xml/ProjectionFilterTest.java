@@ -0,0 +1,81 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.codehaus.mojo.xml.transformer.Projection;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProjectionFilterTest {
+    private static final String DOC = "<catalog id='c'><item id='1'><name>A</name><desc>a</desc></item>"
+            + "<item id='2'><desc>b</desc></item><meta><owner>X</owner></meta></catalog>";
+
+    private static String project(String[] pKeep, String[] pDrop) throws Exception {
+        final Projection projection = new Projection();
+        projection.setKeep(pKeep);
+        projection.setDrop(pDrop);
+        final SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        final ProjectionFilter filter =
+                new ProjectionFilter(spf.newSAXParser().getXMLReader(), ProjectionFilter.compile(projection));
+        final Transformer identity = TransformerFactory.newInstance().newTransformer();
+        identity.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        final StringWriter sw = new StringWriter();
+        identity.transform(new SAXSource(filter, new InputSource(new StringReader(DOC))), new StreamResult(sw));
+        return sw.toString();
+    }
+
+    @Test
+    public void testAbsolutePath() throws Exception {
+        assertEquals(
+                "<catalog id=\"c\"><item id=\"1\"><name>A</name></item><item id=\"2\"/></catalog>",
+                project(new String[] {"/catalog/item"}, new String[] {"desc"}));
+    }
+
+    @Test
+    public void testAnywherePath() throws Exception {
+        // Ancestors without kept descendants, like the second item, and meta, are removed.
+        assertEquals(
+                "<catalog id=\"c\"><item id=\"1\"><name>A</name></item></catalog>",
+                project(new String[] {"//name"}, null));
+        assertEquals(
+                "<catalog id=\"c\"><meta><owner>X</owner></meta></catalog>", project(new String[] {"owner"}, null));
+    }
+
+    @Test
+    public void testRootElement() throws Exception {
+        // The root element is retained, even if nothing is kept, or the root element is dropped.
+        assertEquals("<catalog id=\"c\"/>", project(new String[] {"//missing"}, null));
+        assertEquals("<catalog id=\"c\"/>", project(new String[] {"/other/item"}, null));
+        assertEquals("<catalog id=\"c\"/>", project(null, new String[] {"catalog"}));
+    }
+}
@@ -0,0 +1,107 @@
+package org.codehaus.mojo.xml;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SchemaCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SchemaCache cache = SchemaCache.getInstance();
+
+    private File main, part;
+
+    @Before
+    public void setUp() throws IOException {
+        cache.setMaxSize(16);
+        main = folder.newFile("main.xsd");
+        part = folder.newFile("part.xsd");
+        FileUtils.fileWrite(
+                main,
+                "UTF-8",
+                "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                        + "<xs:include schemaLocation='part.xsd'/></xs:schema>");
+        writePart("a");
+    }
+
+    @After
+    public void tearDown() {
+        cache.setMaxSize(0);
+    }
+
+    private void writePart(String pElementName) throws IOException {
+        FileUtils.fileWrite(
+                part,
+                "UTF-8",
+                "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" + "<xs:element name='" + pElementName
+                        + "'/></xs:schema>");
+    }
+
+    private Map<String, String> getDocuments() throws IOException {
+        final Map<String, String> documents = new LinkedHashMap<String, String>();
+        for (File file : Arrays.asList(main, part)) {
+            final URL url = file.toURI().toURL();
+            documents.put(url.toExternalForm(), ContentHash.of(url));
+        }
+        return documents;
+    }
+
+    private Schema compile() throws SAXException {
+        return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(main);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        final List<Object> key = Arrays.<Object>asList(
+                XMLConstants.W3C_XML_SCHEMA_NS_URI, main.toURI().toString());
+        assertNull(cache.get(key));
+        final Schema schema = compile();
+        cache.put(key, schema, getDocuments());
+        assertSame(schema, cache.get(key));
+        assertSame(schema, cache.get(key));
+    }
+
+    @Test
+    public void testModifiedInclude() throws Exception {
+        final List<Object> key = Arrays.<Object>asList(
+                XMLConstants.W3C_XML_SCHEMA_NS_URI, main.toURI().toString());
+        cache.put(key, compile(), getDocuments());
+        writePart("b");
+        assertNull(cache.get(key));
+        // The stale entry has been removed.
+        writePart("a");
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        cache.setMaxSize(1);
+        final List<Object> key1 = Arrays.<Object>asList("1");
+        final List<Object> key2 = Arrays.<Object>asList("2");
+        final Schema schema = compile();
+        cache.put(key1, schema, getDocuments());
+        cache.put(key2, schema, getDocuments());
+        assertNull(cache.get(key1));
+        assertSame(schema, cache.get(key2));
+    }
+}
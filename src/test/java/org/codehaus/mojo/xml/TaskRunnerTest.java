@@ -0,0 +1,130 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TaskRunnerTest {
+    private final TaskRunner runner = new TaskRunner(2);
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        runner.close();
+    }
+
+    private TaskRunner.Task<Integer> newTask(final int pResult) {
+        return new TaskRunner.Task<Integer>() {
+            public Integer call() throws MojoExecutionException {
+                final int n = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), n));
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new MojoExecutionException("Interrupted", e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return Integer.valueOf(pResult);
+            }
+        };
+    }
+
+    private TaskRunner.Callback<Integer> newCallback(final List<Integer> pResults) {
+        return new TaskRunner.Callback<Integer>() {
+            public void done(Integer pResult) {
+                pResults.add(pResult);
+            }
+        };
+    }
+
+    @Test(timeout = 10000)
+    public void testNestedTasks() throws Exception {
+        final List<TaskRunner.Task<Integer>> tasks = new ArrayList<TaskRunner.Task<Integer>>();
+        final List<List<Integer>> subResults = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            final int task = i;
+            final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+            subResults.add(results);
+            tasks.add(new TaskRunner.Task<Integer>() {
+                public Integer call() throws MojoExecutionException, MojoFailureException {
+                    final List<TaskRunner.Task<Integer>> subtasks = new ArrayList<TaskRunner.Task<Integer>>();
+                    for (int j = 0; j < 4; j++) {
+                        subtasks.add(newTask(10 * task + j));
+                    }
+                    runner.run(3, subtasks, newCallback(results));
+                    return Integer.valueOf(task);
+                }
+            });
+        }
+        final List<Integer> results = new ArrayList<Integer>();
+        // The outer tasks occupy all threads of the pool, so the subtasks are run by the waiting threads.
+        runner.run(3, tasks, newCallback(results));
+        assertEquals(Arrays.asList(0, 1, 2, 3), results);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Arrays.asList(10 * i, 10 * i + 1, 10 * i + 2, 10 * i + 3), subResults.get(i));
+        }
+        // Two pool threads, and the calling thread.
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test(timeout = 10000)
+    public void testFailure() throws Exception {
+        final List<TaskRunner.Task<Integer>> tasks = new ArrayList<TaskRunner.Task<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            final int task = i;
+            tasks.add(new TaskRunner.Task<Integer>() {
+                public Integer call() throws MojoExecutionException {
+                    if (task % 2 == 1) {
+                        throw new MojoExecutionException("Task " + task + " failed");
+                    }
+                    return Integer.valueOf(task);
+                }
+            });
+        }
+        final List<Integer> results = new ArrayList<Integer>();
+        try {
+            runner.run(2, tasks, newCallback(results));
+            fail("Expected exception");
+        } catch (MojoExecutionException e) {
+            // The first failure in list order is reported.
+            assertEquals("Task 1 failed", e.getMessage());
+        }
+        assertEquals(Arrays.asList(0), results);
+    }
+}
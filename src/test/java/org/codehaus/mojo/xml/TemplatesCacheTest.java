@@ -0,0 +1,159 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TemplatesCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TemplatesCache cache = TemplatesCache.getInstance();
+
+    private File main, module;
+
+    private Templates templates;
+
+    @Before
+    public void setUp() throws Exception {
+        cache.setMaxSize(16);
+        main = folder.newFile("main.xsl");
+        module = folder.newFile("module.xsl");
+        FileUtils.fileWrite(
+                main,
+                "UTF-8",
+                "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+                        + "<xsl:import href='module.xsl'/></xsl:stylesheet>");
+        writeModule("a");
+        templates = TransformerFactory.newInstance().newTemplates(new StreamSource(main));
+    }
+
+    @After
+    public void tearDown() {
+        cache.setMaxSize(0);
+    }
+
+    private void writeModule(String pElementName) throws IOException {
+        FileUtils.fileWrite(
+                module,
+                "UTF-8",
+                "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+                        + "<xsl:template match='/'><" + pElementName + "/></xsl:template></xsl:stylesheet>");
+    }
+
+    private Map<String, String> getModules() throws IOException {
+        final Map<String, String> modules = new LinkedHashMap<String, String>();
+        for (File file : Arrays.asList(main, module)) {
+            final URL url = file.toURI().toURL();
+            modules.put(url.toExternalForm(), ContentHash.of(url));
+        }
+        return modules;
+    }
+
+    private static List<Object> key(String pName) {
+        return Arrays.<Object>asList(pName);
+    }
+
+    private String getStatistic(String pName) {
+        for (String statistic : cache.getStatistics().split(", ")) {
+            if (statistic.startsWith(pName + "=")) {
+                return statistic.substring(pName.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        final long hits = Long.parseLong(getStatistic("hits"));
+        final long misses = Long.parseLong(getStatistic("misses"));
+        final Map<String, String> modules = new LinkedHashMap<String, String>();
+        assertNull(cache.get(key("main"), modules));
+        cache.put(key("main"), templates, getModules());
+        assertSame(templates, cache.get(key("main"), modules));
+        assertSame(templates, cache.get(key("main"), modules));
+        assertEquals(getModules(), modules);
+        assertEquals(String.valueOf(hits + 2), getStatistic("hits"));
+        assertEquals(String.valueOf(misses + 1), getStatistic("misses"));
+    }
+
+    @Test
+    public void testModifiedModule() throws Exception {
+        final long misses = Long.parseLong(getStatistic("misses"));
+        cache.put(key("main"), templates, getModules());
+        writeModule("b");
+        assertNull(cache.get(key("main"), new LinkedHashMap<String, String>()));
+        // The stale entry has been removed.
+        writeModule("a");
+        assertNull(cache.get(key("main"), new LinkedHashMap<String, String>()));
+        assertEquals(String.valueOf(misses + 2), getStatistic("misses"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final long evictions = Long.parseLong(getStatistic("evictions"));
+        cache.setMaxSize(2);
+        cache.put(key("1"), templates, getModules());
+        cache.put(key("2"), templates, getModules());
+        // Using "1" marks it as recently used, so that "2" is evicted.
+        assertSame(templates, cache.get(key("1"), new LinkedHashMap<String, String>()));
+        cache.put(key("3"), templates, getModules());
+        assertEquals("2", getStatistic("size"));
+        assertEquals(String.valueOf(evictions + 1), getStatistic("evictions"));
+        assertNull(cache.get(key("2"), new LinkedHashMap<String, String>()));
+        assertSame(templates, cache.get(key("1"), new LinkedHashMap<String, String>()));
+        assertSame(templates, cache.get(key("3"), new LinkedHashMap<String, String>()));
+    }
+
+    @Test
+    public void testEnsureMaxSize() throws Exception {
+        cache.setMaxSize(2);
+        cache.put(key("1"), templates, getModules());
+        cache.put(key("2"), templates, getModules());
+        // A smaller size, as configured by another module, doesn't shrink the cache.
+        cache.ensureMaxSize(1);
+        cache.put(key("3"), templates, getModules());
+        assertEquals("2", getStatistic("size"));
+        cache.ensureMaxSize(3);
+        cache.put(key("4"), templates, getModules());
+        assertEquals("3", getStatistic("size"));
+    }
+}
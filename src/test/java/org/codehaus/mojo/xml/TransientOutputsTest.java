@@ -0,0 +1,89 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransientOutputsTest {
+    private final File a = new File("target/a"), b = new File("target/b");
+
+    private static SaxBuffer newTree(String pText) {
+        final SaxBuffer tree = new SaxBuffer();
+        tree.startDocument();
+        tree.startElement("", "doc", "doc", new AttributesImpl());
+        tree.characters(pText.toCharArray(), 0, pText.length());
+        tree.endElement("", "doc", "doc");
+        tree.endDocument();
+        return tree;
+    }
+
+    @Test
+    public void testReleasedByLastConsumer() {
+        final TransientOutputs outputs = new TransientOutputs(Long.MAX_VALUE);
+        final SaxBuffer tree = newTree("text");
+        final List<File> consumerDirs = Arrays.asList(a, new File("target"), b);
+        assertTrue(outputs.put(new File(a, "doc1.xml"), tree, consumerDirs));
+        assertEquals(tree.getSize(), outputs.getSize());
+        assertEquals(Collections.singletonList("doc1.xml"), outputs.getFileNames(a, null, null));
+
+        outputs.release(new File(a, "doc1.xml"));
+        assertSame(tree, outputs.get(new File(a, "doc1.xml")));
+        outputs.release(new File("target/x/../a/doc1.xml"));
+        assertNull(outputs.get(new File(a, "doc1.xml")));
+        assertEquals(0, outputs.getSize());
+        // Releasing a removed tree is ignored.
+        outputs.release(new File(a, "doc1.xml"));
+    }
+
+    @Test
+    public void testNoConsumers() {
+        final TransientOutputs outputs = new TransientOutputs(Long.MAX_VALUE);
+        assertFalse(outputs.put(new File(a, "doc1.xml"), newTree("text"), Collections.singletonList(b)));
+        assertNull(outputs.get(new File(a, "doc1.xml")));
+    }
+
+    @Test
+    public void testMaxSize() {
+        final SaxBuffer tree1 = newTree("text"), tree2 = newTree("another text");
+        final TransientOutputs outputs = new TransientOutputs(tree1.getSize() + tree2.getSize() - 1);
+        final List<File> consumerDirs = Collections.singletonList(a);
+        assertTrue(outputs.put(new File(a, "doc1.xml"), tree1, consumerDirs));
+        assertFalse(outputs.put(new File(a, "doc2.xml"), tree2, consumerDirs));
+        assertNull(outputs.get(new File(a, "doc2.xml")));
+
+        // Releasing the first tree makes room for the second.
+        outputs.release(new File(a, "doc1.xml"));
+        assertTrue(outputs.put(new File(a, "doc2.xml"), tree2, consumerDirs));
+        assertEquals(tree2.getSize(), outputs.getSize());
+        assertTrue(tree2.getSize() > tree1.getSize());
+    }
+}
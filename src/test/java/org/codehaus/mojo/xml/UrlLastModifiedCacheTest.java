@@ -0,0 +1,153 @@
+package org.codehaus.mojo.xml;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UrlLastModifiedCacheTest {
+    private static final String LAST_MODIFIED = "Sun, 06 Nov 1994 08:49:37 GMT";
+
+    private static final long LAST_MODIFIED_MILLIS = 784111777000L;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc", new HttpHandler() {
+            public void handle(HttpExchange pExchange) throws IOException {
+                final String ifNoneMatch = pExchange.getRequestHeaders().getFirst("If-None-Match");
+                final String ifModifiedSince = pExchange.getRequestHeaders().getFirst("If-Modified-Since");
+                requests.add(pExchange.getRequestMethod() + " " + ifNoneMatch + " " + ifModifiedSince);
+                pExchange.getResponseHeaders().add("ETag", "\"v1\"");
+                pExchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+                if ("\"v1\"".equals(ifNoneMatch)) {
+                    pExchange.sendResponseHeaders(304, -1);
+                } else {
+                    pExchange.sendResponseHeaders(200, -1);
+                }
+                pExchange.close();
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            public void handle(HttpExchange pExchange) throws IOException {
+                requests.add(pExchange.getRequestMethod());
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pExchange.sendResponseHeaders(200, -1);
+                pExchange.close();
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private URL getUrl(String pPath) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + pPath);
+    }
+
+    @Test
+    public void testConditionalRequests() throws IOException {
+        final URL url = getUrl("/doc");
+        final UrlLastModifiedCache cache1 = new UrlLastModifiedCache(1000, 1000);
+        assertEquals(LAST_MODIFIED_MILLIS, cache1.getLastModified(url));
+        assertEquals(LAST_MODIFIED_MILLIS, cache1.getLastModified(url));
+        assertEquals(1, requests.size());
+        final String[] first = requests.get(0).split(" ");
+        assertEquals("HEAD", first[0]);
+        assertEquals("null", first[1]);
+
+        // A new execution queries again, but with the validators of the previous response.
+        final UrlLastModifiedCache cache2 = new UrlLastModifiedCache(1000, 1000);
+        assertEquals(LAST_MODIFIED_MILLIS, cache2.getLastModified(url));
+        assertEquals(2, requests.size());
+        final String[] second = requests.get(1).split(" ", 3);
+        assertEquals("HEAD", second[0]);
+        assertEquals("\"v1\"", second[1]);
+        assertEquals(LAST_MODIFIED, second[2]);
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        final URL url = getUrl("/slow");
+        final UrlLastModifiedCache cache = new UrlLastModifiedCache(1000, 200);
+        IOException failure = null;
+        try {
+            cache.getLastModified(url);
+            fail("Expected a timeout");
+        } catch (IOException e) {
+            failure = e;
+        }
+        // The failure is remembered, so the server isn't queried again.
+        try {
+            cache.getLastModified(url);
+            fail("Expected a timeout");
+        } catch (IOException e) {
+            assertEquals(failure, e);
+        }
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final UrlLastModifiedCache cache = new UrlLastModifiedCache(1000, 5000);
+        final URL slowUrl = getUrl("/slow");
+        final ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<Long>> slowLookups = new ArrayList<Future<Long>>();
+            for (int i = 0; i < 2; i++) {
+                slowLookups.add(clients.submit(new Callable<Long>() {
+                    public Long call() throws IOException {
+                        return Long.valueOf(cache.getLastModified(slowUrl));
+                    }
+                }));
+            }
+            while (requests.isEmpty()) {
+                Thread.sleep(10);
+            }
+            // Another URL is looked up, while the slow lookup is still running.
+            final long start = System.currentTimeMillis();
+            assertEquals(LAST_MODIFIED_MILLIS, cache.getLastModified(getUrl("/doc")));
+            assertTrue(System.currentTimeMillis() - start < 1500);
+            // Both lookups of the slow URL share a single request.
+            for (Future<Long> lookup : slowLookups) {
+                lookup.get();
+            }
+            assertEquals(2, requests.size());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
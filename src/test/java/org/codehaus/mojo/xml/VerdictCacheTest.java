@@ -0,0 +1,56 @@
+package org.codehaus.mojo.xml;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.mojo.xml.validation.ValidationErrorHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VerdictCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEviction() throws Exception {
+        final File dir = folder.newFolder("verdicts");
+        final File file = folder.newFile("doc.xml");
+        final VerdictCache cache = new VerdictCache(dir, 2, new SystemStreamLog());
+        cache.store("a", file, new ValidationErrorHandler(file));
+        cache.store("b", file, new ValidationErrorHandler(file));
+        cache.store("c", file, new ValidationErrorHandler(file));
+        new File(dir, "a.verdict").setLastModified(System.currentTimeMillis() - 60000);
+        new File(dir, "b.verdict").setLastModified(System.currentTimeMillis() - 30000);
+        // Using "a" marks it as recently used, so that "b" is evicted.
+        assertTrue(cache.load("a", file, new ValidationErrorHandler(file)));
+        cache.evict();
+        assertEquals(2, dir.listFiles().length);
+        assertTrue(cache.load("a", file, new ValidationErrorHandler(file)));
+        assertFalse(cache.load("b", file, new ValidationErrorHandler(file)));
+        assertTrue(cache.load("c", file, new ValidationErrorHandler(file)));
+    }
+}
@@ -0,0 +1,192 @@
+package org.codehaus.mojo.xml.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TemplatesHandler;
+import javax.xml.transform.sax.TransformerHandler;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xml.sax.XMLFilter;
+
+/**
+ * A transformer factory, which counts the transformers, that are created from its compiled stylesheets. Used for
+ * checking, that transformers are reused, and that files are transformed by multiple threads.
+ */
+public class CountingTransformerFactory extends SAXTransformerFactory {
+    /**
+     * The number of transformers, and transformer handlers, which have been created from compiled stylesheets.
+     */
+    public static final AtomicInteger TRANSFORMERS = new AtomicInteger();
+
+    /**
+     * The names of the threads, which have created transformers from compiled stylesheets.
+     */
+    public static final Set<String> THREADS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * If not null, every thread, which creates a transformer from a compiled stylesheet, waits (at most 10 seconds)
+     * for the latch, after counting it down. Used for checking, that the expected number of threads works
+     * concurrently.
+     */
+    public static volatile CountDownLatch barrier;
+
+    private final SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
+
+    private static class CountingTemplates implements Templates {
+        private final Templates templates;
+
+        CountingTemplates(Templates pTemplates) {
+            templates = pTemplates;
+        }
+
+        public Transformer newTransformer() throws TransformerConfigurationException {
+            TRANSFORMERS.incrementAndGet();
+            THREADS.add(Thread.currentThread().getName());
+            final CountDownLatch latch = barrier;
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return templates.newTransformer();
+        }
+
+        public Properties getOutputProperties() {
+            return templates.getOutputProperties();
+        }
+    }
+
+    private static Templates unwrap(Templates pTemplates) {
+        return pTemplates instanceof CountingTemplates ? ((CountingTemplates) pTemplates).templates : pTemplates;
+    }
+
+    @Override
+    public TransformerHandler newTransformerHandler(Source pSource) throws TransformerConfigurationException {
+        TRANSFORMERS.incrementAndGet();
+        return factory.newTransformerHandler(pSource);
+    }
+
+    @Override
+    public TransformerHandler newTransformerHandler(Templates pTemplates) throws TransformerConfigurationException {
+        TRANSFORMERS.incrementAndGet();
+        return factory.newTransformerHandler(unwrap(pTemplates));
+    }
+
+    @Override
+    public TransformerHandler newTransformerHandler() throws TransformerConfigurationException {
+        return factory.newTransformerHandler();
+    }
+
+    @Override
+    public TemplatesHandler newTemplatesHandler() throws TransformerConfigurationException {
+        return factory.newTemplatesHandler();
+    }
+
+    @Override
+    public XMLFilter newXMLFilter(Source pSource) throws TransformerConfigurationException {
+        TRANSFORMERS.incrementAndGet();
+        return factory.newXMLFilter(pSource);
+    }
+
+    @Override
+    public XMLFilter newXMLFilter(Templates pTemplates) throws TransformerConfigurationException {
+        TRANSFORMERS.incrementAndGet();
+        return factory.newXMLFilter(unwrap(pTemplates));
+    }
+
+    @Override
+    public Transformer newTransformer(Source pSource) throws TransformerConfigurationException {
+        TRANSFORMERS.incrementAndGet();
+        return factory.newTransformer(pSource);
+    }
+
+    @Override
+    public Transformer newTransformer() throws TransformerConfigurationException {
+        return factory.newTransformer();
+    }
+
+    @Override
+    public Templates newTemplates(Source pSource) throws TransformerConfigurationException {
+        return new CountingTemplates(factory.newTemplates(pSource));
+    }
+
+    @Override
+    public Source getAssociatedStylesheet(Source pSource, String pMedia, String pTitle, String pCharset)
+            throws TransformerConfigurationException {
+        return factory.getAssociatedStylesheet(pSource, pMedia, pTitle, pCharset);
+    }
+
+    @Override
+    public void setURIResolver(URIResolver pResolver) {
+        factory.setURIResolver(pResolver);
+    }
+
+    @Override
+    public URIResolver getURIResolver() {
+        return factory.getURIResolver();
+    }
+
+    @Override
+    public void setFeature(String pName, boolean pValue) throws TransformerConfigurationException {
+        factory.setFeature(pName, pValue);
+    }
+
+    @Override
+    public boolean getFeature(String pName) {
+        return factory.getFeature(pName);
+    }
+
+    @Override
+    public void setAttribute(String pName, Object pValue) {
+        factory.setAttribute(pName, pValue);
+    }
+
+    @Override
+    public Object getAttribute(String pName) {
+        return factory.getAttribute(pName);
+    }
+
+    @Override
+    public void setErrorListener(ErrorListener pListener) {
+        factory.setErrorListener(pListener);
+    }
+
+    @Override
+    public ErrorListener getErrorListener() {
+        return factory.getErrorListener();
+    }
+}
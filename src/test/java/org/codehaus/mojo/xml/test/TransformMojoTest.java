@@ -33,9 +33,18 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.codehaus.mojo.xml.TransformMojo;
 import org.codehaus.mojo.xml.transformer.TransformationSet;
 import org.codehaus.plexus.components.io.filemappers.FileExtensionMapper;
@@ -43,6 +52,7 @@ import org.codehaus.plexus.util.FileUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 /**
  * Test case for the {@link TransformMojo}.
@@ -59,7 +69,10 @@ public class TransformMojoTest extends AbstractXmlMojoTestCase {
      * @throws Exception The test failed.
      */
     public void runTestIt4(String pDir, String pTargetFile) throws Exception {
-        TransformMojo mojo = (TransformMojo) newMojo(pDir);
+        runTestIt4((TransformMojo) newMojo(pDir), pDir, pTargetFile);
+    }
+
+    private void runTestIt4(TransformMojo mojo, String pDir, String pTargetFile) throws Exception {
         mojo.execute();
         Document doc1 = parse(new File(pDir, "xml/doc1.xml"));
         doc1.normalize();
@@ -245,6 +258,462 @@ public class TransformMojoTest extends AbstractXmlMojoTestCase {
         assertEquals(text1.getNodeValue(), text2.getNodeValue());
     }
 
+    /**
+     * Builds the it21 test project, which transforms multiple files in parallel. Every one of the three threads
+     * creates its own transformer, and waits for the others, so the test fails, unless the threads work concurrently.
+     * The files are logged in the order of the input files.
+     * @throws Exception The test failed.
+     */
+    public void testIt21() throws Exception {
+        final String dir = "src/test/it21";
+        final File outputDir = new File(dir, "target/generated-resources/xml/xslt");
+        if (outputDir.exists()) {
+            FileUtils.cleanDirectory(outputDir);
+        }
+        final TransformMojo mojo = (TransformMojo) newMojo(dir);
+        setVariableValueToObject(mojo, "transformerFactory", CountingTransformerFactory.class.getName());
+        final List<String> messages = new ArrayList<String>();
+        mojo.setLog(newRecordingLog(messages));
+        CountingTransformerFactory.TRANSFORMERS.set(0);
+        CountingTransformerFactory.THREADS.clear();
+        CountingTransformerFactory.barrier = new CountDownLatch(3);
+        try {
+            mojo.execute();
+        } finally {
+            CountingTransformerFactory.barrier = null;
+        }
+        assertEquals(3, CountingTransformerFactory.TRANSFORMERS.get());
+        assertEquals(CountingTransformerFactory.THREADS.toString(), 3, CountingTransformerFactory.THREADS.size());
+        final List<String> files = new ArrayList<String>();
+        for (String message : messages) {
+            if (message.startsWith("Transforming file: ")) {
+                files.add(new File(message.substring("Transforming file: ".length())).getName());
+            }
+        }
+        assertEquals(Arrays.asList("doc1.xml", "doc2.xml", "doc3.xml", "doc4.xml", "doc5.xml", "doc6.xml"), files);
+        for (int i = 1; i <= 6; i++) {
+            Document doc = parse(new File(outputDir, "doc" + i + ".xml"));
+            Element docElement = doc.getDocumentElement();
+            assertEquals("doc2", docElement.getLocalName());
+            assertTrue(docElement.getTextContent().startsWith("Sample document " + i + ","));
+        }
+    }
+
+    /**
+     * Builds the it22 test project twice, the second time with the compiled stylesheet from the persistent cache.
+     * A modified cache entry must be ignored.
+     * @throws Exception The test failed.
+     */
+    public void testIt22() throws Exception {
+        final String dir = "src/test/it22";
+        final File cacheDir = new File(dir, "target/templates");
+        if (cacheDir.exists()) {
+            FileUtils.cleanDirectory(cacheDir);
+        }
+        runTestIt4(dir, "doc1.xml");
+        final File[] cacheFiles = cacheDir.listFiles();
+        assertNotNull(cacheFiles);
+        assertEquals(1, cacheFiles.length);
+        final long lastModified = cacheFiles[0].lastModified();
+        List<String> messages = runTestIt22(dir);
+        assertTrue(messages.toString(), contains(messages, "Loaded compiled stylesheet"));
+        assertEquals(lastModified, cacheFiles[0].lastModified());
+        assertEquals(1, cacheDir.listFiles().length);
+
+        // Modify the serialized stylesheet, keeping the signature.
+        final byte[] content = Files.readAllBytes(cacheFiles[0].toPath());
+        content[content.length - 1] ^= 1;
+        Files.write(cacheFiles[0].toPath(), content);
+        messages = runTestIt22(dir);
+        assertFalse(messages.toString(), contains(messages, "Loaded compiled stylesheet"));
+        assertTrue(messages.toString(), contains(messages, "has been modified, or written by another user"));
+        // The entry has been replaced, and is loaded again.
+        assertTrue(contains(runTestIt22(dir), "Loaded compiled stylesheet"));
+    }
+
+    /**
+     * Builds the it22 test project, and returns the logged messages.
+     */
+    private List<String> runTestIt22(String pDir) throws Exception {
+        final List<String> messages = new ArrayList<String>();
+        final TransformMojo mojo = (TransformMojo) newMojo(pDir);
+        mojo.setLog(newRecordingLog(messages));
+        runTestIt4(mojo, pDir, "doc1.xml");
+        return messages;
+    }
+
+    /**
+     * Creates a log, which records the debug, info, and warning messages in the given list.
+     */
+    private static Log newRecordingLog(final List<String> pMessages) {
+        return new SystemStreamLog() {
+            @Override
+            public boolean isDebugEnabled() {
+                return true;
+            }
+
+            @Override
+            public void debug(CharSequence pContent) {
+                pMessages.add(pContent.toString());
+            }
+
+            @Override
+            public void info(CharSequence pContent) {
+                pMessages.add(pContent.toString());
+            }
+
+            @Override
+            public void warn(CharSequence pContent) {
+                pMessages.add(pContent.toString());
+            }
+        };
+    }
+
+    private static boolean contains(List<String> pMessages, String pText) {
+        for (String message : pMessages) {
+            if (message.contains(pText)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the it23 test project repeatedly, checking that the dependency manifest detects a modified document,
+     * which has been loaded by the stylesheet.
+     * @throws Exception The test failed.
+     */
+    public void testIt23() throws Exception {
+        final String dir = "src/test/it23";
+        final File targetDir = new File(dir, "target");
+        if (targetDir.exists()) {
+            FileUtils.cleanDirectory(targetDir);
+        }
+        targetDir.mkdirs();
+        final File titleFile = new File(targetDir, "title.xml");
+        final File outputFile = new File(targetDir, "generated-resources/xml/xslt/doc1.xml");
+        FileUtils.fileWrite(titleFile, "UTF-8", "<title>First title</title>");
+        runTest(dir);
+        assertEquals("First title", parse(outputFile).getDocumentElement().getTextContent());
+
+        // Nothing has changed, so the output must not be created again.
+        final long lastModified = outputFile.lastModified();
+        runTest(dir);
+        assertEquals(lastModified, outputFile.lastModified());
+
+        // The document, which is loaded by the stylesheet, has changed.
+        FileUtils.fileWrite(titleFile, "UTF-8", "<title>Second title</title>");
+        runTest(dir);
+        assertEquals("Second title", parse(outputFile).getDocumentElement().getTextContent());
+    }
+
+    /**
+     * Builds the it24 test project, which applies a pipeline of two stylesheets.
+     * @throws Exception The test failed.
+     */
+    public void testIt24() throws Exception {
+        final String dir = "src/test/it24";
+        runTest(dir);
+        Document doc = parse(new File(dir, "target/generated-resources/xml/xslt/doc1.xml"));
+        Element docElement = doc.getDocumentElement();
+        assertEquals("doc3", docElement.getLocalName());
+        assertEquals(
+                "A sample document, which should be validatable without any problems.!!", docElement.getTextContent());
+    }
+
+    /**
+     * Builds the it25 test project, which transforms the same input file for two targets.
+     * @throws Exception The test failed.
+     */
+    public void testIt25() throws Exception {
+        final String dir = "src/test/it25";
+        runTest(dir);
+        for (String name : new String[] {"a", "b"}) {
+            Document doc = parse(new File(dir, "target/" + name + "/doc1.xml"));
+            Element docElement = doc.getDocumentElement();
+            assertEquals("doc2", docElement.getLocalName());
+            assertEquals("Target-" + name, docElement.getTextContent());
+        }
+    }
+
+    /**
+     * Builds the it26 test project, which loads the same document for every input file, using the document cache.
+     * @throws Exception The test failed.
+     */
+    public void testIt26() throws Exception {
+        final String dir = "src/test/it26";
+        runTest(dir);
+        final String[] expected = {"First", "Second", "Third"};
+        for (int i = 0; i < expected.length; i++) {
+            Document doc = parse(new File(dir, "target/generated-resources/xml/xslt/doc" + (i + 1) + ".xml"));
+            Element docElement = doc.getDocumentElement();
+            assertEquals("doc2", docElement.getLocalName());
+            assertEquals(expected[i], docElement.getTextContent());
+        }
+    }
+
+    /**
+     * Builds the it27 test project twice, and checks, that an unchanged output file is kept.
+     * @throws Exception The test failed.
+     */
+    public void testIt27() throws Exception {
+        final String dir = "src/test/it27";
+        final File output = new File(dir, "target/generated-resources/xml/xslt/doc1.xml");
+        runTest(dir);
+        final long lastModified = output.lastModified() - 60000;
+        assertTrue(output.setLastModified(lastModified));
+        runTest(dir);
+        assertEquals(lastModified, output.lastModified());
+        Document doc = parse(output);
+        assertEquals("doc2", doc.getDocumentElement().getLocalName());
+    }
+
+    /**
+     * Builds the it28 test project, which contains a transformation set, that depends on a subsequent set.
+     * @throws Exception The test failed.
+     */
+    public void testIt28() throws Exception {
+        final String dir = "src/test/it28";
+        FileUtils.deleteDirectory(new File(dir, "target"));
+        runTest(dir);
+        Document doc = parse(new File(dir, "target/b/doc1.xml"));
+        assertEquals("doc3", doc.getDocumentElement().getLocalName());
+        doc = parse(new File(dir, "target/c/doc1.xml"));
+        assertEquals("doc2", doc.getDocumentElement().getLocalName());
+    }
+
+    /**
+     * Builds the it29 test project, which passes the output of a transformation set in memory to two concurrent sets.
+     * @throws Exception The test failed.
+     */
+    public void testIt29() throws Exception {
+        final String dir = "src/test/it29";
+        FileUtils.deleteDirectory(new File(dir, "target"));
+        runTest(dir);
+        assertFalse(new File(dir, "target/a/doc1.xml").exists());
+        for (String outputDir : new String[] {"target/b", "target/c"}) {
+            Document doc = parse(new File(dir, outputDir + "/doc1.xml"));
+            assertEquals("doc3", doc.getDocumentElement().getLocalName());
+        }
+    }
+
+    /**
+     * Builds the it30 test project, which transforms all input files into a single output file.
+     * @throws Exception The test failed.
+     */
+    public void testIt30() throws Exception {
+        final String dir = "src/test/it30";
+        runTest(dir);
+        Document doc = parse(new File(dir, "target/generated-resources/xml/xslt/index.xml"));
+        assertEquals("index", doc.getDocumentElement().getLocalName());
+        NodeList entries = doc.getElementsByTagName("entry");
+        assertEquals(2, entries.getLength());
+        assertEquals("doc1.xml", ((Element) entries.item(0)).getAttribute("name"));
+        assertEquals("Another sample document.", entries.item(1).getTextContent());
+
+        // The dependency manifest isn't supported by aggregate outputs.
+        final TransformMojo mojo = (TransformMojo) newMojo(dir);
+        setVariableValueToObject(mojo, "dependencyManifest", Boolean.TRUE);
+        try {
+            mojo.execute();
+            fail("Expected exception");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains("dependency manifest"));
+        }
+    }
+
+    /**
+     * Builds the it31 test project, which transforms an input file once for every parameter set.
+     * @throws Exception The test failed.
+     */
+    public void testIt31() throws Exception {
+        final String dir = "src/test/it31";
+        runTest(dir);
+        for (String locale : new String[] {"en", "de", "fr"}) {
+            Element docElement =
+                    parse(new File(dir, "target/" + locale + "/doc1.xml")).getDocumentElement();
+            assertEquals("doc2", docElement.getLocalName());
+            assertEquals(locale, docElement.getAttribute("locale"));
+            assertEquals("1", docElement.getAttribute("comments"));
+        }
+    }
+
+    /**
+     * Builds the it31 test project with a single file thread. The parameter sets are still applied concurrently,
+     * because of the "targetThreads".
+     * @throws Exception The test failed.
+     */
+    public void testIt31TargetThreads() throws Exception {
+        final String dir = "src/test/it31";
+        FileUtils.deleteDirectory(new File(dir, "target"));
+        final TransformMojo mojo = (TransformMojo) newMojo(dir);
+        setVariableValueToObject(mojo, "threads", Integer.valueOf(1));
+        setVariableValueToObject(mojo, "targetThreads", Integer.valueOf(3));
+        setVariableValueToObject(mojo, "transformerFactory", CountingTransformerFactory.class.getName());
+        CountingTransformerFactory.TRANSFORMERS.set(0);
+        CountingTransformerFactory.THREADS.clear();
+        CountingTransformerFactory.barrier = new CountDownLatch(3);
+        try {
+            mojo.execute();
+        } finally {
+            CountingTransformerFactory.barrier = null;
+        }
+        assertEquals(CountingTransformerFactory.THREADS.toString(), 3, CountingTransformerFactory.THREADS.size());
+        for (String locale : new String[] {"en", "de", "fr"}) {
+            assertEquals(
+                    locale,
+                    parse(new File(dir, "target/" + locale + "/doc1.xml"))
+                            .getDocumentElement()
+                            .getAttribute("locale"));
+        }
+    }
+
+    /**
+     * Builds the it32 test project, which transforms a file by rewrite rules, rather than a stylesheet.
+     * @throws Exception The test failed.
+     */
+    public void testIt32() throws Exception {
+        final String dir = "src/test/it32";
+        runTest(dir);
+        final String ns = "http://example.com/doc";
+        final Element docElement = parse(new File(dir, "target/out/doc1.xml")).getDocumentElement();
+        assertEquals(ns, docElement.getNamespaceURI());
+        assertEquals("2", docElement.getAttribute("version"));
+        assertEquals(0, docElement.getElementsByTagNameNS(ns, "internal").getLength());
+        assertEquals(0, docElement.getElementsByTagNameNS(ns, "para").getLength());
+        final NodeList paragraphs = docElement.getElementsByTagNameNS(ns, "p");
+        assertEquals(1, paragraphs.getLength());
+        assertEquals("Public", paragraphs.item(0).getTextContent());
+        assertEquals(
+                "Release 7",
+                docElement.getElementsByTagNameNS(ns, "title").item(0).getTextContent());
+        final NodeList metas = docElement.getElementsByTagNameNS("", "meta");
+        assertEquals(1, metas.getLength());
+        // Prefixed attributes are stripped as well, except for those in the XML namespace.
+        final Element meta = (Element) metas.item(0);
+        assertEquals("wiki", meta.getAttributeNS(null, "source"));
+        assertFalse(meta.hasAttributeNS("http://example.com/ext", "source"));
+        assertEquals("en", meta.getAttributeNS("http://www.w3.org/XML/1998/namespace", "lang"));
+        // The children of a stripped element retain their namespace.
+        assertEquals(ns, metas.item(0).getFirstChild().getNamespaceURI());
+    }
+
+    /**
+     * Builds the it33 test project, which passes only a projection of the input file to the stylesheet.
+     * @throws Exception The test failed.
+     */
+    public void testIt33() throws Exception {
+        final String dir = "src/test/it33";
+        runTest(dir);
+        final Element result = parse(new File(dir, "target/out/doc1.xml")).getDocumentElement();
+        // The catalog, both items, and their names.
+        assertEquals("5", result.getAttribute("elements"));
+        assertEquals("12", result.getAttribute("ids"));
+        assertEquals("AB", result.getAttribute("text"));
+        assertEquals("0", result.getAttribute("comments"));
+    }
+
+    /**
+     * Builds the it34 test project, which creates a profile of the templates.
+     * @throws Exception The test failed.
+     */
+    public void testIt34() throws Exception {
+        final String dir = "src/test/it34";
+        runTest(dir);
+        // The test harness uses "target" as the build directory.
+        final File[] profiles = new File("target/xml-maven-plugin").listFiles();
+        assertNotNull(profiles);
+        String profile = null;
+        for (File file : profiles) {
+            if (file.getName().startsWith("profile-") && file.getName().endsWith(".tsv")) {
+                final String content = FileUtils.fileRead(file, "UTF-8");
+                if (content.contains("/it34/it34.xsl")) {
+                    profile = content;
+                }
+            }
+        }
+        assertNotNull(profile);
+        final Map<String, String[]> rows = new HashMap<String, String[]>();
+        for (String line : profile.split("\n")) {
+            final String[] columns = line.split("\t");
+            rows.put(columns[0] + ',' + columns[1], columns);
+        }
+        // Two input files, with three items each.
+        assertEquals("6", rows.get("item,#default")[3]);
+        assertEquals("6", rows.get("item,toc")[3]);
+        assertEquals("6", rows.get("name=format,#default")[3]);
+        assertEquals("2", rows.get("/,#default")[3]);
+        final String[] root = rows.get("/,#default");
+        assertTrue(Double.parseDouble(root[4]) >= Double.parseDouble(root[5]));
+
+        // The JDK's builtin XSLTC processor doesn't support profiling.
+        final TransformMojo mojo = (TransformMojo) newMojo(dir);
+        setVariableValueToObject(
+                mojo, "transformerFactory", "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl");
+        try {
+            mojo.execute();
+            fail("Expected exception");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("doesn't support trace listeners"));
+        }
+    }
+
+    /**
+     * Builds the it35 test project, which writes a timing report.
+     * @throws Exception The test failed.
+     */
+    public void testIt35() throws Exception {
+        final String dir = "src/test/it35";
+        runTest(dir);
+        // The test harness uses "target" as the build directory.
+        final String report = FileUtils.fileRead(new File("target/xml-maven-plugin/timing-transform.json"), "UTF-8");
+        assertTrue(report, report.contains("\"goal\": \"transform\""));
+        assertTrue(report, report.contains("\"name\": \"transformation set copy\""));
+        assertTrue(report, report.contains("\"files\": 2"));
+        assertTrue(report, report.contains("\"p90Millis\": "));
+        final long size = new File(dir, "xml/doc1.xml").length();
+        assertTrue(report, report.contains("\"bytesRead\": " + (2 * size)));
+        // Only the slowest file is listed.
+        assertEquals(report, 1, report.split("\"millis\"").length - 1);
+    }
+
+    /**
+     * Builds the it38 test project, which applies a pipeline of two stylesheets to four files. The transformers of
+     * both stages are created once, and reused for all files.
+     * @throws Exception The test failed.
+     */
+    public void testIt38() throws Exception {
+        final String dir = "src/test/it38";
+        final TransformMojo mojo = (TransformMojo) newMojo(dir);
+        CountingTransformerFactory.TRANSFORMERS.set(0);
+        mojo.execute();
+        assertEquals(2, CountingTransformerFactory.TRANSFORMERS.get());
+        for (int i = 1; i <= 4; i++) {
+            final Element docElement =
+                    parse(new File(dir, "target/out/doc" + i + ".xml")).getDocumentElement();
+            assertEquals("doc3", docElement.getLocalName());
+            assertEquals("A sample document, which should be number " + i + ".!!", docElement.getTextContent());
+        }
+    }
+
+    /**
+     * Builds the it39 test project, where a transformation set reads the output directory of another sets parameter
+     * set. The output is passed in memory, so the sets must be ordered, even though the sets output directory differs.
+     * @throws Exception The test failed.
+     */
+    public void testIt39() throws Exception {
+        final String dir = "src/test/it39";
+        FileUtils.deleteDirectory(new File(dir, "target"));
+        runTest(dir);
+        assertFalse(new File(dir, "target/de/doc1.xml").exists());
+        assertEquals(
+                "en",
+                parse(new File(dir, "target/en/doc1.xml")).getDocumentElement().getAttribute("locale"));
+        final Element docElement = parse(new File(dir, "target/b/doc1.xml")).getDocumentElement();
+        assertEquals("doc3", docElement.getLocalName());
+        assertEquals("de", docElement.getAttribute("locale"));
+    }
+
     /**
      * Builds the xinclude test project, tests xinclude enabled transformation
      * @throws Exception The test failed.
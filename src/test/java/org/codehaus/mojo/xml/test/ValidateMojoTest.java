@@ -17,13 +17,20 @@ package org.codehaus.mojo.xml.test;
  */
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.testing.stubs.ArtifactStub;
+import org.codehaus.mojo.xml.AbstractXmlMojo;
 import org.codehaus.mojo.xml.ValidateMojo;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Test case for the {@link ValidateMojo}.
@@ -163,6 +170,94 @@ public class ValidateMojoTest extends AbstractXmlMojoTestCase {
         }
     }
 
+    /**
+     * Builds the it36 test project, which validates the same files with one, and with four threads.
+     * @throws Exception The test failed.
+     */
+    public void testIt36() throws Exception {
+        try {
+            runTest("src/test/it36");
+            fail("Expected exception");
+        } catch (MojoExecutionException e) {
+            final List<String> files = new ArrayList<String>();
+            final Matcher matcher = Pattern.compile("bad\\d+\\.xml").matcher(e.getMessage());
+            while (matcher.find()) {
+                files.add(matcher.group());
+            }
+            // Four invalid files per validation set, reported in the same order by both sets.
+            final int half = files.size() / 2;
+            assertTrue(half >= 4);
+            assertEquals(files.subList(0, half), files.subList(half, files.size()));
+            assertEquals(4, new HashSet<String>(files).size());
+        }
+    }
+
+    /**
+     * Builds the it37 test project, which checks well-formedness with reused parsers. Every malformed file is
+     * reported once, and the parsers are still usable after a fatal error.
+     * @throws Exception The test failed.
+     */
+    public void testIt37() throws Exception {
+        try {
+            runTest("src/test/it37");
+            fail("Expected exception");
+        } catch (MojoExecutionException e) {
+            final Set<String> files = new HashSet<String>();
+            final Matcher matcher = Pattern.compile("(bad|doc)\\d+\\.xml").matcher(e.getMessage());
+            while (matcher.find()) {
+                files.add(matcher.group());
+            }
+            assertEquals(new HashSet<String>(Arrays.asList("bad2.xml", "bad4.xml", "bad6.xml")), files);
+        }
+    }
+
+    private String runWithVerdictCache(File pVerdictDir) throws Exception {
+        final AbstractXmlMojo mojo = newMojo("src/test/it36");
+        setVariableValueToObject(mojo, "verdictCacheDirectory", pVerdictDir);
+        setVariableValueToObject(mojo, "verdictCacheWarnings", Boolean.TRUE);
+        try {
+            mojo.execute();
+            fail("Expected exception");
+            return null;
+        } catch (MojoExecutionException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Builds the it36 test project with a verdict cache: Valid files are skipped, invalid files are always
+     * validated.
+     * @throws Exception The test failed.
+     */
+    public void testVerdictCache() throws Exception {
+        final File verdictDir = new File(getBasedir(), "target/it36-verdicts");
+        FileUtils.deleteDirectory(verdictDir);
+        final String message = runWithVerdictCache(verdictDir);
+        final File[] verdicts = verdictDir.listFiles();
+        // Verdicts are keyed by content, so valid files with the same content share a verdict.
+        final Set<String> contents = new HashSet<String>();
+        for (File file : new File(getBasedir(), "src/test/it36/xml").listFiles()) {
+            if (file.getName().startsWith("doc")) {
+                contents.add(FileUtils.fileRead(file, "UTF-8"));
+            }
+        }
+        assertEquals(contents.size(), verdicts.length);
+
+        // Add a warning to the verdicts, which is reported, if the valid files are skipped.
+        for (File verdict : verdicts) {
+            final String content = FileUtils.fileRead(verdict, "ISO-8859-1");
+            FileUtils.fileWrite(
+                    verdict,
+                    "ISO-8859-1",
+                    content.replace("warnings=0", "warnings=1")
+                            + "\nwarning.0.message=cached-verdict\nwarning.0.systemId=\n"
+                            + "warning.0.line=1\nwarning.0.column=1\n");
+        }
+        final String cachedMessage = runWithVerdictCache(verdictDir);
+        assertTrue(cachedMessage.contains("cached-verdict"));
+        assertEquals(message, cachedMessage.replaceAll("(?m)^.*cached-verdict.*\r?\n", ""));
+    }
+
     /**
      * Builds the multimodule/xsd-import test project.
      * @throws Exception The test failed.